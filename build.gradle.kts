@@ -14,6 +14,21 @@ configure<JavaPluginExtension> {
   targetCompatibility = JavaVersion.VERSION_1_8
 }
 
+val jmh: SourceSet by sourceSets.creating {
+  compileClasspath += sourceSets["main"].output + sourceSets["main"].compileClasspath
+  runtimeClasspath += output + compileClasspath + sourceSets["main"].runtimeClasspath
+}
+
 dependencies {
   implementation("org.slf4j:slf4j-api:1.7.30")
+  testImplementation("junit:junit:4.13.2")
+  "jmhImplementation"("org.openjdk.jmh:jmh-core:1.37")
+  "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:1.37")
+}
+
+tasks.register<JavaExec>("jmh") {
+  description = "Runs the benchmarks, the GC profiler reports the allocations per operation."
+  classpath = jmh.runtimeClasspath
+  mainClass.set("org.openjdk.jmh.Main")
+  args("-prof", "gc")
 }
@@ -0,0 +1,73 @@
+package express.filter;
+
+import express.http.HttpRequestHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Matching of param routes, for a path which matches and one which doesn't.
+ * Run with the GC profiler to see the allocations per request, the matcher
+ * itself allocates nothing for paths which don't match.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RouteMatchBenchmark {
+
+    private static final String CONTEXT = "/users/:id/posts/:post";
+    private static final String MATCHING = "/users/42/posts/7";
+    private static final String NOT_MATCHING = "/articles/42/comments/7";
+
+    private final int[] bounds = new int[4];
+    private RouteTree tree;
+
+    @Setup
+    public void setup() {
+        HttpRequestHandler handler = (req, res) -> {};
+        String[] contexts = {"/", "/users", "/users/me", "/users/:id", CONTEXT, "/articles/:id", "/api/v1/:resource"};
+
+        tree = new RouteTree();
+        for (int i = 0; i < contexts.length; i++) {
+            tree.insert(new RouteTree.Entry(handler, i, contexts[i], false));
+        }
+
+        tree.seal();
+    }
+
+    @Benchmark
+    public boolean matchUrl() {
+        return FilterImpl.matchURL(CONTEXT, MATCHING, bounds, false);
+    }
+
+    @Benchmark
+    public boolean matchUrlMiss() {
+        return FilterImpl.matchURL(CONTEXT, NOT_MATCHING, null, false);
+    }
+
+    @Benchmark
+    public int lookup() {
+        RouteTree.Matches matches = new RouteTree.Matches();
+        tree.lookup(MATCHING, matches);
+        return matches.size();
+    }
+
+    @Benchmark
+    public int lookupMiss() {
+        RouteTree.Matches matches = new RouteTree.Matches();
+        tree.lookup(NOT_MATCHING, matches);
+        return matches.size();
+    }
+}
@@ -0,0 +1,132 @@
+package express;
+
+import express.http.HttpRequestHandler;
+import express.http.request.Request;
+import express.http.response.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaConversionException;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Turns methods which are annotated with DynExpress into directly callable
+ * request handler. Public methods of public classes are bound through the
+ * LambdaMetafactory and behave like a hand-written lambda, all others are
+ * called through a bound MethodHandle.
+ */
+final class DynExpressInvoker {
+
+    private static final Logger log = LoggerFactory.getLogger(DynExpressInvoker.class);
+
+    private static final MethodType HANDLE_TYPE = MethodType.methodType(void.class, Request.class, Response.class);
+
+    // MethodHandles.privateLookupIn, null before Java 9
+    private static final Method PRIVATE_LOOKUP_IN = findPrivateLookupIn();
+
+    private DynExpressInvoker() {}
+
+    /**
+     * Create a request handler which calls the method.
+     *
+     * @param target The instance, ignored for static methods.
+     * @param method The method, needs to take a Request and a Response.
+     * @return The request handler.
+     * @throws IllegalAccessException If the method is not accessible.
+     */
+    static HttpRequestHandler create(Object target, Method method) throws IllegalAccessException {
+        boolean isStatic = Modifier.isStatic(method.getModifiers());
+
+        // Make private method accessible
+        if (!method.isAccessible()) {
+            method.setAccessible(true);
+        }
+
+        MethodHandle handle = MethodHandles.lookup().unreflect(method);
+
+        if (Modifier.isPublic(method.getModifiers()) && Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+            MethodHandles.Lookup lookup = lookupFor(method.getDeclaringClass());
+
+            if (lookup != null) {
+                try {
+                    return metafactory(lookup, target, method, handle, isStatic);
+                } catch (LambdaConversionException e) {
+                    log.debug("Cannot bind {} as lambda, falling back to a method handle.", method, e);
+                }
+            }
+        }
+
+        MethodHandle bound = (isStatic ? handle : handle.bindTo(target)).asType(HANDLE_TYPE);
+        return (req, res) -> {
+            try {
+                bound.invokeExact(req, res);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new ExpressException("Failed to invoke " + method.getName() + ": " + e, e);
+            }
+        };
+    }
+
+    private static HttpRequestHandler metafactory(MethodHandles.Lookup lookup, Object target, Method method,
+                                                  MethodHandle handle, boolean isStatic) throws LambdaConversionException {
+        MethodType factoryType = isStatic
+                ? MethodType.methodType(HttpRequestHandler.class)
+                : MethodType.methodType(HttpRequestHandler.class, method.getDeclaringClass());
+
+        CallSite site = LambdaMetafactory.metafactory(lookup, "handle", factoryType, HANDLE_TYPE, handle, HANDLE_TYPE);
+
+        try {
+            return isStatic
+                    ? (HttpRequestHandler) site.getTarget().invoke()
+                    : (HttpRequestHandler) site.getTarget().invoke(target);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new ExpressException("Failed to bind " + method.getName() + ": " + e, e);
+        }
+    }
+
+    /**
+     * Returns a lookup in which the lambda class can be defined. The lambda class calls
+     * the target class directly, so it needs to be defined where the target class is visible.
+     *
+     * @param type The class which declares the method.
+     * @return The lookup, null if there is none and the method handle needs to be used.
+     */
+    private static MethodHandles.Lookup lookupFor(Class<?> type) {
+        if (PRIVATE_LOOKUP_IN != null) {
+            try {
+                return (MethodHandles.Lookup) PRIVATE_LOOKUP_IN.invoke(null, type, MethodHandles.lookup());
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                log.debug("Cannot create a lookup in {}, falling back to a method handle.", type.getName(), e);
+                return null;
+            }
+        }
+
+        // Before Java 9 the lambda class is defined next to this class, it needs to see the target class
+        try {
+            return Class.forName(type.getName(), false, DynExpressInvoker.class.getClassLoader()) == type
+                    ? MethodHandles.lookup()
+                    : null;
+        } catch (ClassNotFoundException | LinkageError e) {
+            log.debug("{} is not visible to express, falling back to a method handle.", type.getName(), e);
+            return null;
+        }
+    }
+
+    private static Method findPrivateLookupIn() {
+        try {
+            return MethodHandles.class.getMethod("privateLookupIn", Class.class, MethodHandles.Lookup.class);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
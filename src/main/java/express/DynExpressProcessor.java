@@ -0,0 +1,194 @@
+package express;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Annotation processor which generates a registrar for each class with DynExpress methods.
+ * For a class <code>Bindings</code> the class <code>BindingsRegistrar</code> will be created
+ * in the same package, <code>BindingsRegistrar.register(app, new Bindings())</code> adds all
+ * routes to an Express or ExpressRouter without any reflection. Methods with invalid
+ * signatures are reported as compile errors.
+ */
+public class DynExpressProcessor extends AbstractProcessor {
+
+    private static final String REQUEST = "express.http.request.Request";
+    private static final String RESPONSE = "express.http.response.Response";
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(DynExpress.class.getName());
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        Messager messager = processingEnv.getMessager();
+        Map<TypeElement, List<ExecutableElement>> classes = new LinkedHashMap<>();
+
+        // Group and validate the annotated methods by their class
+        for (Element element : roundEnv.getElementsAnnotatedWith(DynExpress.class)) {
+            ExecutableElement method = (ExecutableElement) element;
+            TypeElement owner = (TypeElement) method.getEnclosingElement();
+
+            if (!isValid(method)) {
+                messager.printMessage(Diagnostic.Kind.ERROR, "DynExpress methods must take (Request, Response) and cannot be private.", method);
+                continue;
+            }
+
+            if (owner.getModifiers().contains(Modifier.PRIVATE) || (owner.getNestingKind().isNested() && !owner.getModifiers().contains(Modifier.STATIC))) {
+                messager.printMessage(Diagnostic.Kind.ERROR, "Classes with DynExpress methods need to be top-level or static and cannot be private.", owner);
+                continue;
+            }
+
+            classes.computeIfAbsent(owner, k -> new ArrayList<>()).add(method);
+        }
+
+        classes.forEach((owner, methods) -> {
+            try {
+                write(owner, methods);
+            } catch (IOException e) {
+                messager.printMessage(Diagnostic.Kind.ERROR, "Failed to generate registrar: " + e.getMessage(), owner);
+            }
+        });
+
+        return true;
+    }
+
+    private boolean isValid(ExecutableElement method) {
+        List<? extends VariableElement> params = method.getParameters();
+
+        return !method.getModifiers().contains(Modifier.PRIVATE)
+                && params.size() == 2
+                && isType(params.get(0).asType(), REQUEST)
+                && isType(params.get(1).asType(), RESPONSE);
+    }
+
+    private boolean isType(TypeMirror type, String name) {
+        return processingEnv.getTypeUtils().erasure(type).toString().equals(name);
+    }
+
+    private void write(TypeElement owner, List<ExecutableElement> methods) throws IOException {
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf(owner);
+        String packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+        String ownerName = owner.getQualifiedName().toString();
+
+        // Nested classes are flattened, Outer.Inner becomes Outer_InnerRegistrar
+        String simpleName = packageName.isEmpty() ? ownerName : ownerName.substring(packageName.length() + 1);
+        String registrar = simpleName.replace('.', '_') + "Registrar";
+
+        // Generic classes keep their type parameters, the registrar doesn't use raw types
+        List<? extends TypeParameterElement> params = owner.getTypeParameters();
+        StringBuilder typeParams = new StringBuilder();
+        StringBuilder typeArgs = new StringBuilder();
+        String router = "R";
+
+        for (TypeParameterElement param : params) {
+            String name = param.getSimpleName().toString();
+            typeParams.append(", ").append(name);
+            typeArgs.append(typeArgs.length() == 0 ? "<" : ", ").append(name);
+
+            List<? extends TypeMirror> bounds = param.getBounds();
+            if (!(bounds.size() == 1 && bounds.get(0).toString().equals("java.lang.Object"))) {
+                for (int i = 0; i < bounds.size(); i++) {
+                    typeParams.append(i == 0 ? " extends " : " & ").append(bounds.get(i));
+                }
+            }
+        }
+
+        if (typeArgs.length() > 0) {
+            typeArgs.append('>');
+        }
+
+        // The router type must not hide a type parameter of the class
+        while (isTypeParam(params, router)) {
+            router += "_";
+        }
+
+        JavaFileObject file = processingEnv.getFiler().createSourceFile(
+                packageName.isEmpty() ? registrar : packageName + "." + registrar, owner);
+
+        try (Writer w = file.openWriter()) {
+            if (!packageName.isEmpty()) {
+                w.write("package " + packageName + ";\n\n");
+            }
+
+            w.write("/**\n");
+            w.write(" * Generated by " + DynExpressProcessor.class.getName() + " out of the DynExpress methods in " + ownerName + ".\n");
+            w.write(" */\n");
+            w.write("public final class " + registrar + " {\n\n");
+            w.write("    private " + registrar + "() {}\n\n");
+            w.write("    /**\n");
+            w.write("     * Adds all DynExpress methods of the target to a router.\n");
+            w.write("     *\n");
+            w.write("     * @param router The router, eg. an Express instance.\n");
+            w.write("     * @param target The instance whose methods will be bound.\n");
+            w.write("     * @param <" + router + ">    The router type.\n");
+            w.write("     * @return The router.\n");
+            w.write("     */\n");
+            w.write("    public static <" + router + " extends express.Router" + typeParams + "> " + router
+                    + " register(" + router + " router, " + ownerName + typeArgs + " target) {\n");
+
+            for (ExecutableElement method : methods) {
+                DynExpress dex = method.getAnnotation(DynExpress.class);
+                String receiver = method.getModifiers().contains(Modifier.STATIC) ? ownerName : "target";
+
+                w.write("        router.all(" + literal(dex.context()) + ", " + literal(dex.method().getMethod()) + ", "
+                        + receiver + "::" + method.getSimpleName() + ");\n");
+            }
+
+            w.write("        return router;\n");
+            w.write("    }\n");
+            w.write("}\n");
+        }
+    }
+
+    private boolean isTypeParam(List<? extends TypeParameterElement> params, String name) {
+        for (TypeParameterElement param : params) {
+            if (param.getSimpleName().contentEquals(name)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private String literal(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+
+        for (char c : s.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                sb.append('\\');
+            }
+
+            sb.append(c);
+        }
+
+        return sb.append('"').toString();
+    }
+
+}
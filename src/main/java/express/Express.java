@@ -5,6 +5,7 @@ import com.sun.net.httpserver.HttpsConfigurator;
 import com.sun.net.httpserver.HttpsServer;
 import express.filter.FilterImpl;
 import express.filter.FilterLayerHandler;
+import express.filter.RouteCache;
 import express.filter.FilterTask;
 import express.filter.FilterWorker;
 import express.http.HttpRequestHandler;
@@ -12,11 +13,13 @@ import express.http.request.Request;
 import express.http.response.Response;
 
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.net.InetSocketAddress;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 
@@ -29,20 +32,34 @@ public class Express implements Router {
     private final ConcurrentHashMap<String, HttpRequestHandler> parameterListener;
     private final ConcurrentHashMap<Object, Object> locals;
 
-    private final ArrayList<FilterWorker> worker;
+    // Copy-on-write, replace() exchanges the worker while the server is running
+    private final CopyOnWriteArrayList<FilterWorker> worker;
+    private boolean workerStarted; // Guarded by worker
     private final FilterLayerHandler handler;
 
     private Executor executor;
     private String hostname;
-    private HttpServer httpServer;
+    private volatile HttpServer httpServer;
     private HttpsConfigurator httpsConfigurator;
 
+    // Maximum size of an x-www-form-urlencoded body in bytes
+    private volatile long maxFormSize = 2 * 1024 * 1024;
+
+    // Maximum size of a request body in bytes, -1 if there is no limit
+    private volatile long maxBodySize = -1;
+
+    // Multipart parts which are larger will be written to a temp file
+    private volatile long multipartThreshold = 64 * 1024;
+
+    // Reuse request and response objects after the response has been closed
+    private volatile boolean recycling;
+
     {
         // Initialize
         parameterListener = new ConcurrentHashMap<>();
         locals = new ConcurrentHashMap<>();
 
-        worker = new ArrayList<>();
+        worker = new CopyOnWriteArrayList<>();
         handler = new FilterLayerHandler(2);
 
         executor = Executors.newCachedThreadPool();
@@ -94,6 +111,7 @@ public class Express implements Router {
 
     /**
      * Add a listener which will be called when an url with this parameter is called.
+     * The listener are bound to the matching routes, adding one recompiles the routes.
      *
      * @param param   The parameter name.
      * @param request An request handler.
@@ -101,11 +119,15 @@ public class Express implements Router {
      */
     public Express onParam(String param, HttpRequestHandler request) {
         parameterListener.put(param, request);
+        handler.setParameterListener(parameterListener);
         return this;
     }
 
-    public ConcurrentHashMap<String, HttpRequestHandler> getParameterListener() {
-        return parameterListener;
+    /**
+     * @return An unmodifiable view of the parameter listener, use onParam to add one.
+     */
+    public Map<String, HttpRequestHandler> getParameterListener() {
+        return Collections.unmodifiableMap(parameterListener);
     }
 
     /**
@@ -145,6 +167,117 @@ public class Express implements Router {
         }
     }
 
+    /**
+     * Enables a bounded cache which maps the request method and raw path to the
+     * resolved handler and their params, a hit skips the route matching entirely.
+     * The cache is cleared whenever routes or middleware are added.
+     *
+     * @param maxSize The maximum amount of cached paths, zero or less disables the cache.
+     * @return Express this express instance
+     */
+    public Express setRouteCache(int maxSize) {
+        handler.setCache(maxSize > 0 ? new RouteCache(maxSize) : null);
+        return this;
+    }
+
+    /**
+     * @return The route cache with its hit and miss counters, null if it's disabled.
+     */
+    public RouteCache getRouteCache() {
+        return handler.getCache();
+    }
+
+    /**
+     * Set the maximum size of an x-www-form-urlencoded body, a larger body will not
+     * be parsed and Request.getFormQuerys throws an ExpressException. Default is 2 MiB.
+     *
+     * @param maxFormSize The maximum size in bytes.
+     * @return Express this express instance
+     */
+    public Express setMaxFormSize(long maxFormSize) {
+        if (maxFormSize < 0) {
+            throw new IllegalArgumentException("Form size cannot be negative: " + maxFormSize);
+        }
+
+        this.maxFormSize = maxFormSize;
+        return this;
+    }
+
+    /**
+     * @return The maximum size of an x-www-form-urlencoded body in bytes.
+     */
+    public long getMaxFormSize() {
+        return maxFormSize;
+    }
+
+    /**
+     * Set the maximum size of all request bodies. Requests with a larger Content-Length are
+     * rejected with 413 before they are routed, bodies without a Content-Length fail while
+     * they are read. Use the BodyLimit middleware to set a lower limit for specific routes.
+     *
+     * @param maxBodySize The maximum size in bytes, -1 for no limit which is the default.
+     * @return Express this express instance
+     */
+    public Express setMaxBodySize(long maxBodySize) {
+        if (maxBodySize < -1) {
+            throw new IllegalArgumentException("Body size cannot be negative: " + maxBodySize);
+        }
+
+        this.maxBodySize = maxBodySize;
+        return this;
+    }
+
+    /**
+     * @return The maximum size of a request body in bytes, -1 if there is no limit.
+     */
+    public long getMaxBodySize() {
+        return maxBodySize;
+    }
+
+    /**
+     * Set the size up to which parts of a multipart/form-data body are kept in memory,
+     * larger parts are written to a temp file. Default is 64 KiB.
+     *
+     * @param multipartThreshold The threshold in bytes.
+     * @return Express this express instance
+     */
+    public Express setMultipartThreshold(long multipartThreshold) {
+        if (multipartThreshold < 0) {
+            throw new IllegalArgumentException("Threshold cannot be negative: " + multipartThreshold);
+        }
+
+        this.multipartThreshold = multipartThreshold;
+        return this;
+    }
+
+    /**
+     * @return The size up to which parts of a multipart/form-data body are kept in memory.
+     */
+    public long getMultipartThreshold() {
+        return multipartThreshold;
+    }
+
+    /**
+     * Reuse the cookie and query index and the attribute slots of the requests of each thread
+     * after the response has been closed, instead of allocating new ones for every request.
+     * Request and response objects are invalidated once the response has been sent, every
+     * following call throws an IllegalStateException. Default is false.
+     *
+     * @param recycling If the request internals should be reused.
+     * @return Express this express instance
+     */
+    public Express setRecycling(boolean recycling) {
+        this.recycling = recycling;
+        return this;
+    }
+
+    /**
+     * @return True if the request internals are reused.
+     */
+    public boolean isRecycling() {
+        return recycling;
+    }
+
     /**
      * Add an routing object.
      *
@@ -152,7 +285,7 @@ public class Express implements Router {
      * @return Express this express instance
      */
     public Express use(ExpressRouter router) {
-        this.handler.combine(router.getHandler());
+        this.handler.mount(null, router.getHandler());
         this.worker.addAll(router.getWorker());
         return this;
     }
@@ -164,15 +297,38 @@ public class Express implements Router {
      * @param router The router.
      * @return Express this express instance
      */
-    @SuppressWarnings("unchecked")
     public Express use(String root, ExpressRouter router) {
+        this.handler.mount(root, router.getHandler());
+        this.worker.addAll(router.getWorker());
+        return this;
+    }
 
-        router.getHandler().forEach(fl -> fl.getFilter().forEach(layer -> {
-            ((FilterImpl) layer).setRoot(root);
-        }));
+    /**
+     * Replace all routes and middleware with a router, while the server keeps running.
+     * Requests which are already running finish with the old routes, every request
+     * after this call is handled by the router. Worker of the old middleware are stopped.
+     *
+     * @param router The router, it will be mounted without a root.
+     * @return Express this express instance
+     */
+    public Express replace(ExpressRouter router) {
+        this.handler.replace(router.getHandler());
+
+        // Exchange the worker of the middleware, the new ones are started before the old ones are stopped
+        ArrayList<FilterWorker> replacement = new ArrayList<>(router.getWorker());
+        synchronized (worker) {
+            if (workerStarted) {
+                replacement.forEach(FilterWorker::start);
+            }
 
-        this.handler.combine(router.getHandler());
-        this.worker.addAll(router.getWorker());
+            worker.addAllAbsent(replacement);
+            for (FilterWorker old : worker) {
+                if (!replacement.contains(old)) {
+                    worker.remove(old);
+                    old.stop();
+                }
+            }
+        }
 
         return this;
     }
@@ -266,14 +422,9 @@ public class Express implements Router {
                     continue;
                 }
 
-                // Make private method accessible
-                if (!method.isAccessible()) {
-                    method.setAccessible(true);
-                }
-
                 // Validate parameter types
                 Class<?>[] params = method.getParameterTypes();
-                if (params.length < 1 || params[0] != Request.class || params[1] != Response.class) {
+                if (params.length != 2 || params[0] != Request.class || params[1] != Response.class) {
                     StringBuilder sb = new StringBuilder();
                     for (Class<?> c : params) {
                         sb.append(c.getSimpleName());
@@ -291,19 +442,22 @@ public class Express implements Router {
                     continue;
                 }
 
+                // Create an handler which calls the method directly
+                HttpRequestHandler invoker;
+                try {
+                    invoker = DynExpressInvoker.create(o, method);
+                } catch (IllegalAccessException e) {
+                    e.printStackTrace();
+                    continue;
+                }
+
                 DynExpress[] annotations = method.getAnnotationsByType(DynExpress.class);
                 for (DynExpress dex : annotations) {
                     String context = dex.context();
                     String requestMethod = dex.method().getMethod();
 
                     // Bind to instance
-                    handler.add(1, new FilterImpl(requestMethod, context, (req, res) -> {
-                        try {
-                            method.invoke(o, req, res);
-                        } catch (IllegalAccessException | InvocationTargetException e) {
-                            e.printStackTrace();
-                        }
-                    }));
+                    handler.add(1, new FilterImpl(requestMethod, context, invoker));
                 }
             }
         }
@@ -351,7 +505,13 @@ public class Express implements Router {
             try {
 
                 // Fire worker threads
-                worker.forEach(FilterWorker::start);
+                synchronized (worker) {
+                    worker.forEach(FilterWorker::start);
+                    workerStarted = true;
+                }
+
+                // Compile the routes, everything added later will be compiled again
+                handler.freeze();
 
                 InetSocketAddress socketAddress = this.hostname == null ? new InetSocketAddress(port) : new InetSocketAddress(this.hostname, port);
                 if (httpsConfigurator != null) {
@@ -395,7 +555,10 @@ public class Express implements Router {
             httpServer.stop(0);
 
             // Stop worker threads
-            worker.forEach(FilterWorker::stop);
+            synchronized (worker) {
+                worker.forEach(FilterWorker::stop);
+                workerStarted = false;
+            }
         }
     }
 }
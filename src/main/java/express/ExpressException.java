@@ -20,4 +20,16 @@ public class ExpressException extends RuntimeException {
     public ExpressException(String message) {
         super(message);
     }
+
+    /**
+     * Constructs a new exception with the specified detail message and cause.
+     *
+     * @param message the detail message. The detail message is saved for
+     *                later retrieval by the getMessage() method.
+     * @param cause   the cause, which is saved for later retrieval by the
+     *                getCause() method.
+     */
+    public ExpressException(String message, Throwable cause) {
+        super(message, cause);
+    }
 }
\ No newline at end of file
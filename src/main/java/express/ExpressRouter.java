@@ -23,6 +23,32 @@ public class ExpressRouter implements Router {
         handler = new FilterLayerHandler(2);
     }
 
+    /**
+     * Add an routing object, it will be resolved relative to the root of this router.
+     *
+     * @param router The router.
+     * @return This router.
+     */
+    public ExpressRouter use(ExpressRouter router) {
+        handler.mount(null, router.getHandler());
+        workers.addAll(router.getWorker());
+        return this;
+    }
+
+    /**
+     * Add an routing object with an specific root, it will be resolved
+     * relative to the root of this router.
+     *
+     * @param root   The root path for all request to this router.
+     * @param router The router.
+     * @return This router.
+     */
+    public ExpressRouter use(String root, ExpressRouter router) {
+        handler.mount(root, router.getHandler());
+        workers.addAll(router.getWorker());
+        return this;
+    }
+
     public ExpressRouter use(HttpRequestHandler middleware) {
         addMiddleware("*", "*", middleware);
         return this;
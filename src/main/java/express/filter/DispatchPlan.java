@@ -0,0 +1,265 @@
+package express.filter;
+
+import express.http.HttpRequestHandler;
+import express.http.RequestMethod;
+import express.http.request.Request;
+import express.http.response.Response;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+/**
+ * Immutable dispatch plan which has been compiled out of a route snapshot.
+ * The last layer contains the routes, all layers before are middleware. Every
+ * route knows the ordered list of middleware which can apply to it, so a request
+ * which hits a route walks an array instead of matching each middleware again.
+ */
+final class DispatchPlan {
+
+    private final RouteTable.Trees[] middleware;
+    private final RouteTable.Trees routes;
+    private final RouteCache.Table cache;
+
+    DispatchPlan(RouteTable[] tables, RouteCache cache, Map<String, HttpRequestHandler> listeners) {
+        this.middleware = new RouteTable.Trees[tables.length - 1];
+        this.routes = tables[tables.length - 1].compile();
+        this.cache = cache == null ? null : cache.table();
+
+        // Mounted handler may have changed, so every table is compiled again
+        for (int i = 0; i < middleware.length; i++) {
+            middleware[i] = tables[i].compile();
+            bind(middleware[i], listeners);
+        }
+
+        bind(routes, listeners);
+
+        for (RouteTree.Entry route : routes.entries) {
+            ArrayList<Link> chain = new ArrayList<>();
+
+            for (RouteTable.Trees trees : middleware) {
+                for (RouteTree.Entry entry : trees.entries) {
+                    Link link = link(entry, route);
+
+                    if (link != null) {
+                        chain.add(link);
+                    }
+                }
+            }
+
+            route.chain = chain.toArray(new Link[0]);
+        }
+    }
+
+    void handle(Request req, Response res) {
+        String path = req.getURI().getRawPath();
+
+        // Resolve the whole chain once, following requests skip the matching
+        if (cache != null) {
+            RouteTree.Matches resolved = cache.get(req, path);
+
+            if (resolved == null) {
+                resolved = resolve(req, path);
+                cache.put(req, path, resolved);
+            }
+
+            RouteTable.fire(req, res, path, resolved);
+            return;
+        }
+
+        RouteTree.Matches matches = new RouteTree.Matches();
+        routes.lookup(req, path, matches);
+
+        // Without a route, the middleware need to be matched one by one
+        if (matches.size() == 0) {
+            for (RouteTable.Trees trees : middleware) {
+                RouteTree.Matches layer = new RouteTree.Matches();
+                trees.lookup(req, path, layer);
+                RouteTable.fire(req, res, path, layer);
+
+                if (res.isClosed()) {
+                    return;
+                }
+            }
+
+            return;
+        }
+
+        // Every middleware which matches the path is part of the chain of each matching route
+        int[] bounds = matches.bounds(0);
+        for (Link link : matches.entry(0).chain) {
+            if (res.isClosed()) {
+                return;
+            }
+
+            link.fire(req, res, path, bounds);
+        }
+
+        RouteTable.fire(req, res, path, matches);
+    }
+
+    /**
+     * Resolves every middleware and route which matches the request, in the order they will be fired.
+     *
+     * @param req  The request.
+     * @param path The raw request path.
+     * @return The matching handler.
+     */
+    private RouteTree.Matches resolve(Request req, String path) {
+        RouteTree.Matches matches = new RouteTree.Matches();
+        RouteTree.Matches resolved = new RouteTree.Matches();
+        routes.lookup(req, path, matches);
+
+        if (matches.size() == 0) {
+            for (RouteTable.Trees trees : middleware) {
+                RouteTree.Matches layer = new RouteTree.Matches();
+                trees.lookup(req, path, layer);
+                resolved.append(layer);
+            }
+
+            return resolved;
+        }
+
+        int[] bounds = matches.bounds(0);
+        for (Link link : matches.entry(0).chain) {
+            int[] linkBounds = link.match(req, path, bounds);
+
+            if (linkBounds != null) {
+                resolved.append(link.entry, linkBounds);
+            }
+        }
+
+        resolved.append(matches);
+        return resolved;
+    }
+
+    /**
+     * Resolves the parameter listener of every entry, so requests don't need to look them up.
+     */
+    private static void bind(RouteTable.Trees trees, Map<String, HttpRequestHandler> listeners) {
+        for (RouteTree.Entry entry : trees.entries) {
+            entry.listeners = FilterImpl.listeners(entry.params, listeners);
+        }
+    }
+
+    /**
+     * Creates the link between a middleware and a route.
+     *
+     * @return The link, null if the middleware can never apply to a request which matches the route.
+     */
+    private static Link link(RouteTree.Entry middleware, RouteTree.Entry route) {
+        FilterImpl mf = middleware.filter;
+        FilterImpl rf = route.filter;
+        RequestMethod mm = mf == null ? RequestMethod.ALL : mf.getMethod();
+        RequestMethod rm = rf == null ? RequestMethod.ALL : rf.getMethod();
+        boolean exact;
+
+        // Check the request method
+        if (mm == RequestMethod.ALL) {
+            exact = true;
+        } else if (rm == RequestMethod.ALL) {
+            exact = false;
+        } else if (mm == rm && (rm != null || mf.getRequestMethod().equals(rf.getRequestMethod()))) {
+            exact = true;
+        } else {
+            return null;
+        }
+
+        // Check the context, middleware without a root are fired on every request
+        String mc = middleware.context;
+        String rc = route.context;
+        if (middleware.catchAll && mc.isEmpty()) {
+            return new Link(middleware, exact);
+        } else if (middleware.catchAll || route.catchAll) {
+            return related(mc, rc) ? new Link(middleware, false) : null;
+        } else if (shape(mc).equals(shape(rc))) {
+            return new Link(middleware, exact);
+        } else if (isStatic(middleware) && isStatic(route)) {
+            return null;
+        }
+
+        return related(mc, rc) ? new Link(middleware, false) : null;
+    }
+
+    /**
+     * Compares the static part in front of the first param or wildcard,
+     * if none is a prefix of the other they can never match the same path.
+     */
+    private static boolean related(String mc, String rc) {
+        String ms = staticPrefix(mc);
+        String rs = staticPrefix(rc);
+        return ms.startsWith(rs) || rs.startsWith(ms);
+    }
+
+    private static String staticPrefix(String context) {
+        for (int i = 0; i < context.length(); i++) {
+            char c = context.charAt(i);
+
+            if (c == ':' || c == '*' || c == '?' || c == '{') {
+                return context.substring(0, i);
+            }
+        }
+
+        return context;
+    }
+
+    /**
+     * @return If the context of the entry matches only a single path.
+     */
+    private static boolean isStatic(RouteTree.Entry entry) {
+        return entry.pattern == null && entry.params.length == 0;
+    }
+
+    /**
+     * Removes the param names from a context, two contexts with
+     * the same shape match exactly the same paths.
+     */
+    private static String shape(String context) {
+        StringBuilder sb = new StringBuilder(context.length());
+        int i = 0;
+
+        while (i < context.length()) {
+            char c = context.charAt(i++);
+            sb.append(c);
+
+            if (c == ':') {
+                while (i < context.length() && context.charAt(i) != '/') {
+                    i++;
+                }
+            }
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * A middleware in the chain of a route. Exact links are known to match every
+     * request which matches the route, all others still check the request.
+     */
+    static final class Link {
+        private final RouteTree.Entry entry;
+        private final boolean exact;
+
+        Link(RouteTree.Entry entry, boolean exact) {
+            this.entry = entry;
+            this.exact = exact;
+        }
+
+        int[] match(Request req, String path, int[] bounds) {
+            return exact ? bounds : entry.match(req, path);
+        }
+
+        void fire(Request req, Response res, String path, int[] bounds) {
+            if (exact) {
+
+                // Same shape as the route, the params are at the same position
+                entry.fire(req, res, path, bounds);
+            } else {
+                int[] own = entry.match(req, path);
+
+                if (own != null) {
+                    entry.fire(req, res, path, own);
+                }
+            }
+        }
+    }
+}
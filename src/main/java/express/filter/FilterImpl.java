@@ -1,13 +1,12 @@
 package express.filter;
 
 import express.http.HttpRequestHandler;
+import express.http.RequestMethod;
 import express.http.request.Request;
 import express.http.response.Response;
 
-import java.io.UnsupportedEncodingException;
-import java.net.URLDecoder;
-import java.util.HashMap;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.ArrayList;
+import java.util.Map;
 
 /**
  * @author Simon Reinisch
@@ -17,26 +16,32 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public class FilterImpl implements HttpRequestHandler {
 
+    static final HttpRequestHandler[] NO_LISTENERS = new HttpRequestHandler[0];
+
     private final HttpRequestHandler request;
     private final String req;
+    private final RequestMethod method;
     private final String context;
     private final boolean reqAll;
     private final boolean contextAll;
 
     private String root;
     private String fullContext;
+    private String[] paramNames;
+    private RoutePattern pattern;
 
     public FilterImpl(String requestMethod, String context, HttpRequestHandler httpRequest) {
         this.req = requestMethod;
+        this.method = RequestMethod.of(requestMethod);
         this.request = httpRequest;
         this.context = normalizePath(context);
 
         // Save some information's which don't need to be processed again
-        this.reqAll = requestMethod.equals("*");
+        this.reqAll = method == RequestMethod.ALL;
         this.contextAll = context.equals("*");
 
         this.root = "/";
-        this.fullContext = this.context;
+        setFullContext(this.context);
     }
 
     public void setRoot(String root) {
@@ -55,44 +60,79 @@ public class FilterImpl implements HttpRequestHandler {
         }
 
         this.root = normalizePath(root);
-        this.fullContext = normalizePath(this.root + context);
+        setFullContext(normalizePath(this.root + context));
+    }
+
+    private void setFullContext(String fullContext) {
+        this.fullContext = fullContext;
+
+        // Glob contexts are matched by an automaton and have no params
+        if (!contextAll && RoutePattern.isPattern(fullContext)) {
+            this.pattern = RoutePattern.compile(fullContext);
+            this.paramNames = new String[0];
+        } else {
+            this.pattern = null;
+            this.paramNames = parseParamNames(fullContext);
+        }
     }
 
     @Override
     public void handle(Request req, Response res) {
-        String requestMethod = req.getMethod();
         String requestPath = req.getURI().getRawPath();
-        ConcurrentHashMap<String, HttpRequestHandler> parameterListener = req.getApp().getParameterListener();
 
-        if (!(reqAll || this.req.equals(requestMethod))) {
+        if (!matchMethod(req)) {
             return;
         } else if (contextAll) {
-            req.setContext(context);
-            request.handle(req, res);
+            apply(req, res, requestPath, paramNames, null, NO_LISTENERS);
+            return;
+        } else if (pattern != null) {
+            if (pattern.matches(requestPath)) {
+                apply(req, res, requestPath, paramNames, RouteTree.Matches.NO_BOUNDS, NO_LISTENERS);
+            }
+
             return;
         }
 
-        // Parse params
-        HashMap<String, String> params = matchURL(fullContext, requestPath);
-        if (params == null) {
+        // Check the path first, the bounds are only allocated for matching paths
+        if (!matchURL(fullContext, requestPath, null, false)) {
             return;
         }
 
-        // Save parameter to request object
-        req.setParams(params);
+        int[] bounds = new int[paramNames.length * 2];
+        matchURL(fullContext, requestPath, bounds, false);
+        apply(req, res, requestPath, paramNames, bounds, listeners(paramNames, req.getApp().getParameterListener()));
+    }
+
+    /**
+     * Fire the handler for an request which already matched this filter.
+     *
+     * @param req       The request.
+     * @param res       The response.
+     * @param path      The raw request path.
+     * @param names     The param names, can differ from the own names if the filter is mounted.
+     * @param bounds    Start and end index of each param in the path.
+     * @param listeners The parameter listener of the params, in the order of the params.
+     */
+    void apply(Request req, Response res, String path, String[] names, int[] bounds, HttpRequestHandler[] listeners) {
+        if (contextAll) {
+            req.setContext(context);
+            request.handle(req, res);
+            return;
+        }
 
-        // Check parameter listener
-        params.forEach((s, s2) -> {
-            HttpRequestHandler request = parameterListener.get(s);
+        // Save parameter to request object, they will be decoded on access
+        req.setParams(path, names, bounds);
 
-            if (request != null) {
-                request.handle(req, res);
+        // Fire parameter listener
+        if (listeners.length > 0) {
+            for (HttpRequestHandler listener : listeners) {
+                listener.handle(req, res);
             }
-        });
 
-        // Check if the response is closed
-        if (res.isClosed()) {
-            return;
+            // Check if the response is closed
+            if (res.isClosed()) {
+                return;
+            }
         }
 
         // Handle request
@@ -101,58 +141,177 @@ public class FilterImpl implements HttpRequestHandler {
     }
 
     /**
-     * Extract and match the parameter from the url with an filter.
+     * Check if the request method matches the method of this filter.
+     * Known methods are compared by their enum constant.
      */
-    private HashMap<String, String> matchURL(String filter, String url) {
-        HashMap<String, String> params = new HashMap<>();
-        StringBuilder key = new StringBuilder();
-        StringBuilder val = new StringBuilder();
-        char[] uc = url.toCharArray();
-        char[] fc = filter.toCharArray();
-        int ui = 0, fi = 0;
+    boolean matchMethod(Request req) {
+        if (reqAll) {
+            return true;
+        } else if (method != null) {
+            return method == req.getRequestMethod();
+        }
 
-        for (; fi < fc.length && ui < uc.length; fi++, ui++) {
+        return this.req.equals(req.getMethod());
+    }
 
-            if (fc[fi] == ':') {
-                key.setLength(0);
-                val.setLength(0);
+    /**
+     * @return The request method, '*' if the filter accepts every method.
+     */
+    public String getRequestMethod() {
+        return req;
+    }
 
-                fi++;
+    /**
+     * @return The request method, null if the method is not one of the known methods.
+     */
+    public RequestMethod getMethod() {
+        return method;
+    }
 
-                while (fi < fc.length && fc[fi] != '/') {
-                    key.append(fc[fi++]);
-                }
+    /**
+     * @return The context including the root.
+     */
+    public String getFullContext() {
+        return fullContext;
+    }
+
+    /**
+     * @return True if the filter matches every path.
+     */
+    public boolean isContextAll() {
+        return contextAll;
+    }
+
+    /**
+     * @return True if the context is a glob pattern.
+     */
+    boolean isPattern() {
+        return pattern != null;
+    }
+
+    /**
+     * @return The names of the params in the context, in the order they appear.
+     */
+    public String[] getParamNames() {
+        return paramNames;
+    }
+
+    /**
+     * @return The context without the root.
+     */
+    public String getContext() {
+        return context;
+    }
 
-                while (ui < uc.length && uc[ui] != '/') {
-                    val.append(uc[ui++]);
+    /**
+     * Match the url against a context. The url is walked in place, the start
+     * and end index of each param will be written into bounds.
+     * A param at the end of the context also accepts a trailing slash, a context
+     * which ends with a slash after a param also matches the url without it.
+     *
+     * @param filter The context.
+     * @param url    The raw request path.
+     * @param bounds Target for the param bounds, can be null if only the match is relevant.
+     * @param prefix If the context only needs to match a prefix of the url which ends at a slash.
+     * @return True if the url matches the context.
+     */
+    static boolean matchURL(String filter, String url, int[] bounds, boolean prefix) {
+        int fl = filter.length(), ul = url.length();
+        int fi = 0, ui = 0, param = 0;
+        boolean endsWithParam = false, afterParam = false;
+
+        while (fi < fl) {
+            char c = filter.charAt(fi);
+
+            if (c == ':') {
+                int fend = filter.indexOf('/', fi);
+                int uend = url.indexOf('/', ui);
+                fend = fend == -1 ? fl : fend;
+                uend = uend == -1 ? ul : uend;
+
+                // Params can only be empty if the url goes on with a slash
+                if (ui == ul) {
+                    return false;
                 }
 
-                try {
-                    String decVal = URLDecoder.decode(val.toString(), "UTF8");
-                    params.put(key.toString(), decVal);
-                } catch (UnsupportedEncodingException e) {
-                    e.printStackTrace();
+                if (bounds != null) {
+                    bounds[param * 2] = ui;
+                    bounds[param * 2 + 1] = uend;
                 }
 
-            } else if (fc[fi] != uc[ui]) {
+                endsWithParam = fend == fl;
+                afterParam = true;
+                param++;
+                fi = fend;
+                ui = uend;
+            } else if (ui < ul && c == url.charAt(ui)) {
+                afterParam = false;
+                fi++;
+                ui++;
+            } else if (afterParam && ui == ul && fi == fl - 1) {
+
+                // A slash at the end of the context after a param is optional
+                fi++;
+            } else {
 
                 // Failed
-                return null;
+                return false;
             }
         }
 
-        if (ui < url.length() || fi < filter.length()) {
-            return null;
+        if (prefix) {
+            return ui == ul || url.charAt(ui) == '/' || (ui > 0 && url.charAt(ui - 1) == '/');
+        }
+
+        return ui == ul || (endsWithParam && ui == ul - 1 && url.charAt(ui) == '/');
+    }
+
+    /**
+     * Extract the param names from an context, a param reaches from ':' until the next slash.
+     */
+    static String[] parseParamNames(String context) {
+        ArrayList<String> names = new ArrayList<>();
+        int i = context.indexOf(':');
+
+        while (i != -1) {
+            int end = context.indexOf('/', i);
+            end = end == -1 ? context.length() : end;
+            names.add(context.substring(i + 1, end));
+            i = context.indexOf(':', end);
+        }
+
+        return names.toArray(new String[0]);
+    }
+
+    /**
+     * Resolve the parameter listener of each param, params without a listener are left out.
+     *
+     * @param names     The param names.
+     * @param listeners The parameter listener by their param name.
+     * @return The listener in the order of the params.
+     */
+    static HttpRequestHandler[] listeners(String[] names, Map<String, HttpRequestHandler> listeners) {
+        if (names.length == 0 || listeners.isEmpty()) {
+            return NO_LISTENERS;
+        }
+
+        ArrayList<HttpRequestHandler> bound = new ArrayList<>();
+        for (String name : names) {
+            HttpRequestHandler listener = listeners.get(name);
+
+            if (listener != null) {
+                bound.add(listener);
+            }
         }
 
-        return params;
+        return bound.isEmpty() ? NO_LISTENERS : bound.toArray(NO_LISTENERS);
     }
 
     /**
      * Replace all double slashes from an string with an single slash
      */
-    private String normalizePath(String context) {
-        if (context == null || context.length() == 1)
+    static String normalizePath(String context) {
+        if (context == null || context.length() <= 1)
             return context;
 
         StringBuilder sb = new StringBuilder();
@@ -1,44 +1,58 @@
 package express.filter;
 
 import express.http.HttpRequestHandler;
-import express.http.request.Request;
-import express.http.response.Response;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.ListIterator;
 
 /**
  * @author Simon Reinisch
  * <p>
- * Controller class for FilterLayer.
+ * Controller class for FilterLayer. The handler are stored in the route
+ * snapshot of the FilterLayerHandler, this class only provides access to one layer.
  */
 public class FilterLayer<T extends HttpRequestHandler> {
 
-    private final List<T> filter = Collections.synchronizedList(new ArrayList<>());
+    private final FilterLayerHandler handler;
+    private final int level;
+
+    FilterLayer(FilterLayerHandler handler, int level) {
+        this.handler = handler;
+        this.level = level;
+    }
 
     public void add(T expressFilter) {
-        this.filter.add(expressFilter);
+        this.handler.add(level, expressFilter);
     }
 
     public void add(int index, T expressFilter) {
-        this.filter.add(index, expressFilter);
+        this.handler.update(level, table -> table.add(index, expressFilter));
     }
 
     public void addAll(List<T> expressFilters) {
-        this.filter.addAll(expressFilters);
+        this.handler.update(level, table -> table.addAll(expressFilters));
     }
 
+    /**
+     * Returns the handler of this layer, mounted routers are replaced by their own handler.
+     *
+     * @return An unmodifiable snapshot of the current handler.
+     */
+    @SuppressWarnings("unchecked")
     public List<T> getFilter() {
-        return filter;
+        ArrayList<HttpRequestHandler> filter = new ArrayList<>();
+        expand(handler.getTable(level).<HttpRequestHandler>handlers(), filter);
+        return (List<T>) Collections.unmodifiableList(filter);
     }
 
-    void filter(Request req, Response res) {
-        ListIterator<T> iter = this.filter.listIterator();
-
-        while (!res.isClosed() && iter.hasNext()) {
-            iter.next().handle(req, res);
+    private static void expand(List<HttpRequestHandler> handlers, ArrayList<HttpRequestHandler> target) {
+        for (HttpRequestHandler handler : handlers) {
+            if (handler instanceof FilterMount) {
+                expand(((FilterMount) handler).handlers(), target);
+            } else {
+                target.add(handler);
+            }
         }
     }
 }
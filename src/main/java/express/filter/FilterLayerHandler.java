@@ -6,59 +6,107 @@ import express.ExpressException;
 import express.http.HttpRequestHandler;
 import express.http.request.Request;
 import express.http.response.Response;
+import express.middleware.BodyLimit;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 
 /**
  * @author Simon Reinisch
  * <p>
- * Handler for multiple FilterLayer.
+ * Handler for multiple FilterLayer. All layers are published as one immutable
+ * snapshot, requests read it once and never see a partially applied change.
+ * Once compiled, each change compiles a new dispatch plan for the snapshot.
  */
 public class FilterLayerHandler {
 
+    private final AtomicReference<RouteTable[]> tables;
     private final FilterLayer[] layers;
 
+    // Handler in which this one is mounted, they need to recompile on changes
+    private final CopyOnWriteArrayList<FilterLayerHandler> parents = new CopyOnWriteArrayList<>();
+
+    // Compiled out of the tables, null until the handler has been compiled
+    private volatile DispatchPlan plan;
+    private volatile RouteCache cache;
+    private volatile Map<String, HttpRequestHandler> listeners = Collections.emptyMap();
+
     public FilterLayerHandler(int layers) {
 
         // Create & initialize layers
+        RouteTable[] tables = new RouteTable[layers];
         this.layers = new FilterLayer[layers];
         for (int i = 0; i < this.layers.length; i++) {
-            this.layers[i] = new FilterLayer<>();
+            this.layers[i] = new FilterLayer<>(this, i);
+            tables[i] = RouteTable.EMPTY;
         }
+
+        this.tables = new AtomicReference<>(tables);
     }
 
     public void handle(HttpExchange httpExchange, Express express) {
-        Request request = new Request(httpExchange, express);
+        boolean recycling = express.isRecycling();
+        Request request = recycling ? Request.pooled(httpExchange, express) : new Request(httpExchange, express);
         Response response = new Response(httpExchange);
 
-        // First fire all middleware's, then the normal request filter
-        for (FilterLayer chain : layers) {
-            chain.filter(request, response);
+        try {
 
-            if (response.isClosed()) {
+            // Reject too large bodies before anything reads them
+            if (express.getMaxBodySize() >= 0 && BodyLimit.reject(request, response, express.getMaxBodySize())) {
                 return;
             }
+
+            DispatchPlan plan = this.plan;
+            if (plan == null) {
+                plan = compile();
+            }
+
+            // First fire all middleware's, then the normal request filter
+            plan.handle(request, response);
+        } finally {
+            request.cleanup();
+
+            // A response which is still open or streaming may be used by an handler later on
+            if (recycling && response.isClosed() && !response.isStreaming()) {
+                request.recycle();
+                response.recycle();
+            }
         }
     }
 
+    /**
+     * Compiles the current handler into an immutable dispatch plan. After the
+     * first call, every new handler will compile and publish a new plan.
+     *
+     * @return The dispatch plan which is now used for new requests.
+     */
+    synchronized DispatchPlan compile() {
+        return this.plan = new DispatchPlan(tables.get(), cache, listeners);
+    }
+
+    /**
+     * Compiles the handler, which is done by express before the server starts.
+     * Handler which are added later will trigger a recompile.
+     */
+    public void freeze() {
+        compile();
+    }
+
     /**
      * Add an new handler for an specific handler layers.
      *
      * @param level   The layers.
      * @param handler The handler, will be append to the top of the layers.
      */
-    @SuppressWarnings("unchecked")
     public void add(int level, HttpRequestHandler handler) {
-
-        if (level >= layers.length) {
-            throw new IndexOutOfBoundsException("Out of bounds: " + level + " > " + layers.length);
-        }
-
-        if (level < 0) {
-            throw new IndexOutOfBoundsException("Cannot be under zero: " + level + " < 0");
-        }
-
-        layers[level].add(handler);
+        update(level, table -> table.add(table.size(), handler));
     }
 
     /**
@@ -66,21 +114,142 @@ public class FilterLayerHandler {
      *
      * @param filterLayerHandler The FilterLayerHandler which you want to merge with this
      */
-    @SuppressWarnings("unchecked")
     public void combine(FilterLayerHandler filterLayerHandler) {
         if (filterLayerHandler != null) {
-            FilterLayer[] chains = filterLayerHandler.getLayers();
+            RouteTable[] chains = filterLayerHandler.tables.get();
 
             if (chains.length != layers.length) {
                 throw new ExpressException("Cannot add an filterLayerHandler with different layers sizes: " + chains.length + " != " + layers.length);
             }
 
-            for (int i = 0; i < chains.length; i++) {
-                layers[i].addAll(chains[i].getFilter());
+            publish(current -> {
+                RouteTable[] copy = current.clone();
+
+                for (int i = 0; i < chains.length; i++) {
+                    copy[i] = copy[i].addAll(chains[i].handlers());
+                }
+
+                return copy;
+            });
+        }
+    }
+
+    /**
+     * Mount an other FilterLayerHandler below a root. The handler isn't copied,
+     * its routes are resolved below the root and later changes are picked up.
+     *
+     * @param root    The root, null or an empty string mounts the handler without a root.
+     * @param handler The FilterLayerHandler which you want to mount into this.
+     */
+    public void mount(String root, FilterLayerHandler handler) {
+        if (handler == null) {
+            return;
+        }
+
+        if (handler == this || isMountedIn(handler)) {
+            throw new ExpressException("Cannot mount an filterLayerHandler into itself.");
+        }
+
+        if (handler.layers.length != layers.length) {
+            throw new ExpressException("Cannot add an filterLayerHandler with different layers sizes: " + handler.layers.length + " != " + layers.length);
+        }
+
+        handler.parents.addIfAbsent(this);
+
+        try {
+            publish(current -> {
+                RouteTable[] copy = current.clone();
+
+                for (int i = 0; i < copy.length; i++) {
+                    copy[i] = copy[i].add(copy[i].size(), new FilterMount(root, handler, i));
+                }
+
+                return copy;
+            });
+        } catch (ExpressException e) {
+            if (!contains(handler)) {
+                handler.parents.remove(this);
+            }
+
+            throw e;
+        }
+    }
+
+    /**
+     * Replace all handler with an other FilterLayerHandler, which is mounted without a root.
+     * The new routes are swapped in at once: requests which are already running finish
+     * with the old routes, requests after this call see only the new ones.
+     *
+     * @param handler The FilterLayerHandler which replaces the current handler, null removes all handler.
+     */
+    public void replace(FilterLayerHandler handler) {
+        RouteTable[] replacement = new RouteTable[layers.length];
+        Arrays.fill(replacement, RouteTable.EMPTY);
+
+        if (handler != null) {
+            if (handler == this || isMountedIn(handler)) {
+                throw new ExpressException("Cannot mount an filterLayerHandler into itself.");
+            }
+
+            if (handler.layers.length != layers.length) {
+                throw new ExpressException("Cannot add an filterLayerHandler with different layers sizes: " + handler.layers.length + " != " + layers.length);
+            }
+
+            for (int i = 0; i < replacement.length; i++) {
+                replacement[i] = replacement[i].add(0, new FilterMount(null, handler, i));
+            }
+
+            handler.parents.addIfAbsent(this);
+        }
+
+        RouteTable[] old;
+        try {
+            old = publish(current -> replacement);
+        } catch (ExpressException e) {
+            if (handler != null && !contains(handler)) {
+                handler.parents.remove(this);
+            }
+
+            throw e;
+        }
+
+        // Handler which are no longer mounted don't need to notify this one
+        for (RouteTable table : old) {
+            for (HttpRequestHandler h : table.handlers()) {
+                if (h instanceof FilterMount && ((FilterMount) h).getHandler() != handler) {
+                    ((FilterMount) h).getHandler().parents.remove(this);
+                }
             }
         }
     }
 
+    /**
+     * Set the cache for resolved routes, null disables it.
+     *
+     * @param cache The cache.
+     */
+    public void setCache(RouteCache cache) {
+        this.cache = cache;
+        recompile();
+    }
+
+    /**
+     * Set the parameter listener, they are bound to the routes with the same param names.
+     *
+     * @param listeners The parameter listener by their param name, will be copied.
+     */
+    public void setParameterListener(Map<String, HttpRequestHandler> listeners) {
+        this.listeners = new HashMap<>(listeners);
+        recompile();
+    }
+
+    /**
+     * @return The cache for resolved routes, null if there is none.
+     */
+    public RouteCache getCache() {
+        return cache;
+    }
+
     /**
      * Iterate over the different FilterLayer
      *
@@ -96,8 +265,153 @@ public class FilterLayerHandler {
         }
     }
 
-    private FilterLayer[] getLayers() {
-        return layers;
+    /**
+     * Replace the table of a layer, the new snapshot is swapped in atomically.
+     *
+     * @param level  The layer.
+     * @param update Creates the new table out of the current one.
+     */
+    void update(int level, UnaryOperator<RouteTable> update) {
+
+        if (level >= layers.length) {
+            throw new IndexOutOfBoundsException("Out of bounds: " + level + " > " + layers.length);
+        }
+
+        if (level < 0) {
+            throw new IndexOutOfBoundsException("Cannot be under zero: " + level + " < 0");
+        }
+
+        publish(current -> {
+            RouteTable[] copy = current.clone();
+            copy[level] = update.apply(current[level]);
+            return copy;
+        });
+    }
+
+    /**
+     * Swap in new tables and recompile. If the new routes are invalid or cannot be
+     * compiled the previous tables stay in place and the exception is thrown.
+     *
+     * @param change Creates the new tables out of the current ones.
+     * @return The previous tables.
+     * @throws ExpressException If the new routes are invalid.
+     */
+    private RouteTable[] publish(UnaryOperator<RouteTable[]> change) {
+        RouteTable[][] swap = new RouteTable[2][];
+
+        tables.updateAndGet(current -> {
+            RouteTable[] next = change.apply(current);
+            checkPatterns(next);
+            swap[0] = current;
+            swap[1] = next;
+            return next;
+        });
+
+        try {
+            changed();
+        } catch (ExpressException e) {
+
+            // Restore the previous routes, unless an other change has been published meanwhile
+            if (tables.compareAndSet(swap[1], swap[0])) {
+                changed();
+            }
+
+            throw e;
+        }
+
+        return swap[0];
+    }
+
+    /**
+     * @return True if the handler is mounted directly into this one.
+     */
+    private boolean contains(FilterLayerHandler handler) {
+        for (RouteTable table : tables.get()) {
+            for (HttpRequestHandler h : table.handlers()) {
+                if (h instanceof FilterMount && ((FilterMount) h).getHandler() == handler) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private void recompile() {
+        if (plan != null) {
+            compile();
+        }
+    }
+
+    /**
+     * Route patterns are matched by an automaton which doesn't extract params, so they
+     * cannot be below a root with params. Checked before new tables are published, an
+     * invalid change fails without affecting the current routes.
+     *
+     * @param tables The new tables.
+     * @throws ExpressException If a route pattern would be mounted below a root with params.
+     */
+    private void checkPatterns(RouteTable[] tables) {
+        boolean paramRoot = hasParamRoot();
+
+        for (RouteTable table : tables) {
+            checkPatterns(table.handlers(), paramRoot);
+        }
+    }
+
+    private static void checkPatterns(List<HttpRequestHandler> handlers, boolean paramRoot) {
+        for (HttpRequestHandler handler : handlers) {
+            if (handler instanceof FilterMount) {
+                FilterMount mount = (FilterMount) handler;
+                checkPatterns(mount.handlers(), paramRoot || mount.getRoot().indexOf(':') != -1);
+            } else if (paramRoot && handler instanceof FilterImpl && ((FilterImpl) handler).isPattern()) {
+                throw new ExpressException("Route patterns cannot be mounted below a root with params: " + ((FilterImpl) handler).getContext());
+            }
+        }
+    }
+
+    /**
+     * @return True if this handler is mounted below a root with params, directly or through its parents.
+     */
+    private boolean hasParamRoot() {
+        for (FilterLayerHandler parent : parents) {
+            for (RouteTable table : parent.tables.get()) {
+                for (HttpRequestHandler h : table.handlers()) {
+                    if (h instanceof FilterMount && ((FilterMount) h).getHandler() == this && ((FilterMount) h).getRoot().indexOf(':') != -1) {
+                        return true;
+                    }
+                }
+            }
+
+            if (parent.hasParamRoot()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean isMountedIn(FilterLayerHandler handler) {
+        for (FilterLayerHandler parent : parents) {
+            if (parent == handler || parent.isMountedIn(handler)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void changed() {
+        recompile();
+
+        // Handler in which this one is mounted contain the old routes
+        for (FilterLayerHandler parent : parents) {
+            parent.changed();
+        }
+    }
+
+    RouteTable getTable(int level) {
+        return tables.get()[level];
     }
 
 }
@@ -0,0 +1,78 @@
+package express.filter;
+
+import express.http.HttpRequestHandler;
+import express.http.request.Request;
+import express.http.response.Response;
+
+import java.util.List;
+
+/**
+ * A FilterLayerHandler which has been mounted with a root into a layer of an other
+ * handler. The mounted handler isn't copied or changed, its current handler are
+ * inserted below the root whenever the parent compiles its routes.
+ */
+final class FilterMount implements HttpRequestHandler {
+
+    private final String root;
+    private final FilterLayerHandler handler;
+    private final int level;
+
+    FilterMount(String root, FilterLayerHandler handler, int level) {
+        this.root = normalizeRoot(root);
+        this.handler = handler;
+        this.level = level;
+    }
+
+    /**
+     * @return The root, starts and ends with a slash or is empty.
+     */
+    String getRoot() {
+        return root;
+    }
+
+    /**
+     * @return The mounted handler.
+     */
+    FilterLayerHandler getHandler() {
+        return handler;
+    }
+
+    /**
+     * @return The current handler of the mounted layer.
+     */
+    List<HttpRequestHandler> handlers() {
+        return handler.getTable(level).handlers();
+    }
+
+    /**
+     * Only used if the mount is fired on its own, a dispatch plan resolves the
+     * mounted handler through its route trees.
+     */
+    @Override
+    public void handle(Request req, Response res) {
+        String path = req.getURI().getRawPath();
+        RouteTree.Matches matches = new RouteTree.Matches();
+
+        RouteTable.compile(new HttpRequestHandler[]{this}).lookup(req, path, matches);
+        RouteTable.fire(req, res, path, matches);
+    }
+
+    private static String normalizeRoot(String root) {
+
+        // Ignore empty root
+        if (root == null || root.isEmpty()) {
+            return "";
+        }
+
+        if (root.charAt(0) != '/') {
+            root = '/' + root;
+        }
+
+        if (root.charAt(root.length() - 1) != '/') {
+            root += '/';
+        }
+
+        root = FilterImpl.normalizePath(root);
+        return root.equals("/") ? "" : root;
+    }
+}
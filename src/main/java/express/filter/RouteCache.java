@@ -0,0 +1,154 @@
+package express.filter;
+
+import express.http.RequestMethod;
+import express.http.request.Request;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache which maps the request method and the raw request path to the
+ * resolved handler chain including the extracted params. Entries are evicted in
+ * insertion order (FIFO) once the cache is full. Each compiled dispatch plan gets
+ * an empty table, so registering routes invalidates everything which was cached.
+ * Requests with a method which is not part of RequestMethod are never cached.
+ */
+public final class RouteCache {
+
+    private final int maxSize;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private volatile Table current;
+
+    /**
+     * @param maxSize The maximum amount of cached paths.
+     */
+    public RouteCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be greater than zero: " + maxSize);
+        }
+
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return The maximum amount of cached paths.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return The current amount of cached paths.
+     */
+    public int size() {
+        Table table = current;
+        return table == null ? 0 : table.size.get();
+    }
+
+    /**
+     * @return How often a request was resolved out of the cache.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return How often a request had to be resolved by matching the routes.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return How many entries had been removed to make room for new ones.
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Creates an empty table for a new dispatch plan.
+     *
+     * @return The table, which is from now on reported by this cache.
+     */
+    Table table() {
+        return this.current = new Table();
+    }
+
+    /**
+     * The cached entries of a single dispatch plan.
+     */
+    final class Table {
+        private final ConcurrentHashMap<String, RouteTree.Matches>[] methods;
+        private final ConcurrentLinkedQueue<Key> order;
+        private final AtomicInteger size;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private Table() {
+            this.methods = new ConcurrentHashMap[RequestMethod.values().length];
+            this.order = new ConcurrentLinkedQueue<>();
+            this.size = new AtomicInteger();
+
+            for (int i = 0; i < methods.length; i++) {
+                methods[i] = new ConcurrentHashMap<>();
+            }
+        }
+
+        RouteTree.Matches get(Request req, String path) {
+            RequestMethod method = req.getRequestMethod();
+            RouteTree.Matches matches = method == null ? null : methods[method.ordinal()].get(path);
+
+            if (matches != null) {
+                hits.increment();
+            } else {
+                misses.increment();
+            }
+
+            return matches;
+        }
+
+        void put(Request req, String path, RouteTree.Matches matches) {
+            RequestMethod method = req.getRequestMethod();
+            if (method == null) {
+                return;
+            }
+
+            ConcurrentHashMap<String, RouteTree.Matches> map = methods[method.ordinal()];
+            if (map.putIfAbsent(path, matches) != null) {
+                return;
+            }
+
+            order.add(new Key(map, path));
+
+            // Remove the oldest entries until there is space again
+            int n = size.incrementAndGet();
+            while (n > maxSize) {
+                Key oldest = order.poll();
+
+                if (oldest == null) {
+                    break;
+                }
+
+                if (oldest.map.remove(oldest.path) != null) {
+                    n = size.decrementAndGet();
+                    evictions.increment();
+                }
+            }
+        }
+    }
+
+    private static final class Key {
+        private final ConcurrentHashMap<String, RouteTree.Matches> map;
+        private final String path;
+
+        private Key(ConcurrentHashMap<String, RouteTree.Matches> map, String path) {
+            this.map = map;
+            this.path = path;
+        }
+    }
+}
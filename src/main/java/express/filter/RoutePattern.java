@@ -0,0 +1,399 @@
+package express.filter;
+
+import express.ExpressException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Deterministic automaton which matches a path against many glob patterns in a
+ * single pass. The patterns are compiled into one NFA which is converted into a
+ * DFA, the cost of a match only depends on the length of the path.
+ * <p>
+ * Supported syntax:
+ * <ul>
+ * <li><code>?</code> matches a single character except a slash</li>
+ * <li><code>*</code> matches any amount of characters except a slash</li>
+ * <li><code>**</code> matches any amount of characters including slashes</li>
+ * <li><code>{a|b}</code> matches one of the alternatives, which can contain patterns too</li>
+ * </ul>
+ * All other characters are matched literally against the raw request path.
+ */
+final class RoutePattern {
+
+    private static final int[] NO_MATCH = new int[0];
+
+    // Upper bound for the amount of states, the subset construction can explode for pathological patterns
+    private static final int MAX_STATES = 10000;
+
+    // Node types of the NFA
+    private static final int CHAR = 0;
+    private static final int SEGMENT = 1;
+    private static final int ANY = 2;
+    private static final int SPLIT = 3;
+    private static final int ACCEPT = 4;
+
+    // Only used by the parser, a loop over SEGMENT nodes
+    private static final int STAR = 5;
+
+    // Character classes, '/' and characters which don't appear in any pattern have their own
+    private static final int SLASH = 0;
+    private static final int OTHER = 1;
+
+    private final int[] ascii;
+    private final HashMap<Character, Integer> unicode;
+    private final int classes;
+    private final int[] transitions;
+    private final int[][] accepts;
+
+    private RoutePattern(int[] ascii, HashMap<Character, Integer> unicode, int classes, int[] transitions, int[][] accepts) {
+        this.ascii = ascii;
+        this.unicode = unicode;
+        this.classes = classes;
+        this.transitions = transitions;
+        this.accepts = accepts;
+    }
+
+    /**
+     * Check if a context uses the pattern syntax, a bare '*' is a catch-all and no pattern.
+     *
+     * @param context The context.
+     * @return If the context needs to be matched by an automaton.
+     */
+    static boolean isPattern(String context) {
+        if (context.equals("*")) {
+            return false;
+        }
+
+        for (int i = 0; i < context.length(); i++) {
+            char c = context.charAt(i);
+
+            if (c == '*' || c == '?' || c == '{') {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Compile a single pattern.
+     *
+     * @param pattern The pattern.
+     * @return The automaton.
+     * @throws ExpressException If the pattern is invalid.
+     */
+    static RoutePattern compile(String pattern) {
+        return compile(new String[]{pattern});
+    }
+
+    /**
+     * Compile all patterns into a single automaton.
+     *
+     * @param patterns The patterns.
+     * @return The automaton, a match returns the indices of the matching patterns.
+     * @throws ExpressException If a pattern is invalid or the patterns are too complex.
+     */
+    static RoutePattern compile(String[] patterns) {
+        Nfa nfa = new Nfa();
+        int[] starts = new int[patterns.length];
+
+        for (int i = 0; i < patterns.length; i++) {
+            Parser parser = new Parser(patterns[i]);
+            List<Object> sequence = parser.sequence();
+
+            if (parser.i != patterns[i].length()) {
+                throw new ExpressException("Invalid route pattern, unexpected '" + patterns[i].charAt(parser.i) + "': " + patterns[i]);
+            }
+
+            starts[i] = nfa.build(sequence, nfa.node(ACCEPT, i, -1));
+        }
+
+        // Every literal character, except the slash, gets its own class
+        int[] ascii = new int[128];
+        HashMap<Character, Integer> unicode = new HashMap<>();
+        int classes = 2;
+
+        Arrays.fill(ascii, OTHER);
+        ascii['/'] = SLASH;
+
+        for (int i = 0; i < nfa.size; i++) {
+            char c = (char) nfa.value[i];
+
+            if (nfa.type[i] != CHAR || c == '/') {
+                continue;
+            }
+
+            if (c < 128 && ascii[c] == OTHER) {
+                ascii[c] = classes++;
+            } else if (c >= 128 && !unicode.containsKey(c)) {
+                unicode.put(c, classes++);
+            }
+        }
+
+        // Subset construction, each DFA state is a set of NFA nodes
+        HashMap<String, Integer> ids = new HashMap<>();
+        ArrayList<int[]> states = new ArrayList<>();
+        int[] transitions = new int[16 * classes];
+
+        int[] initial = nfa.closure(starts);
+        ids.put(Arrays.toString(initial), 0);
+        states.add(initial);
+
+        for (int state = 0; state < states.size(); state++) {
+            int[] nodes = states.get(state);
+
+            if (transitions.length < (state + 1) * classes) {
+                transitions = Arrays.copyOf(transitions, transitions.length * 2);
+            }
+
+            for (int cls = 0; cls < classes; cls++) {
+                ArrayList<Integer> next = new ArrayList<>();
+
+                for (int node : nodes) {
+                    if (nfa.accepts(node, cls, ascii, unicode)) {
+                        next.add(nfa.next[node]);
+                    }
+                }
+
+                if (next.isEmpty()) {
+                    transitions[state * classes + cls] = -1;
+                    continue;
+                }
+
+                int[] closure = nfa.closure(next.stream().mapToInt(Integer::intValue).toArray());
+                String key = Arrays.toString(closure);
+                Integer id = ids.get(key);
+
+                if (id == null) {
+                    if (states.size() == MAX_STATES) {
+                        throw new ExpressException("Route patterns are too complex, more than " + MAX_STATES + " states.");
+                    }
+
+                    id = states.size();
+                    ids.put(key, id);
+                    states.add(closure);
+                }
+
+                transitions[state * classes + cls] = id;
+            }
+        }
+
+        // Collect the matching patterns of each state, in the order of the patterns
+        int[][] accepts = new int[states.size()][];
+        for (int state = 0; state < accepts.length; state++) {
+            TreeSet<Integer> matching = new TreeSet<>();
+
+            for (int node : states.get(state)) {
+                if (nfa.type[node] == ACCEPT) {
+                    matching.add(nfa.value[node]);
+                }
+            }
+
+            accepts[state] = matching.isEmpty() ? NO_MATCH : matching.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        return new RoutePattern(ascii, unicode, classes, Arrays.copyOf(transitions, states.size() * classes), accepts);
+    }
+
+    /**
+     * Match a path against all patterns.
+     *
+     * @param path The raw request path.
+     * @return The sorted indices of the matching patterns, must not be modified.
+     */
+    int[] match(String path) {
+        int state = 0;
+
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            int cls = c < 128 ? ascii[c] : unicode.getOrDefault(c, OTHER);
+
+            state = transitions[state * classes + cls];
+            if (state == -1) {
+                return NO_MATCH;
+            }
+        }
+
+        return accepts[state];
+    }
+
+    /**
+     * @param path The raw request path.
+     * @return If any pattern matches the path.
+     */
+    boolean matches(String path) {
+        return match(path).length > 0;
+    }
+
+    /**
+     * Recursive descent parser which turns a pattern into a sequence of literal
+     * characters (Character), wildcards (SEGMENT, STAR or ANY) and alternatives (List).
+     */
+    private static final class Parser {
+        private final String pattern;
+        private int i;
+
+        Parser(String pattern) {
+            this.pattern = pattern;
+        }
+
+        List<Object> sequence() {
+            ArrayList<Object> sequence = new ArrayList<>();
+
+            while (i < pattern.length()) {
+                char c = pattern.charAt(i);
+
+                if (c == '|' || c == '}') {
+                    break;
+                }
+
+                i++;
+                if (c == '?') {
+                    sequence.add(SEGMENT);
+                } else if (c == '*' && i < pattern.length() && pattern.charAt(i) == '*') {
+                    sequence.add(ANY);
+                    i++;
+                } else if (c == '*') {
+                    sequence.add(STAR);
+                } else if (c == '{') {
+                    sequence.add(alternatives());
+                } else if (c == ':') {
+                    throw new ExpressException("Route patterns cannot contain params: " + pattern);
+                } else {
+                    sequence.add(c);
+                }
+            }
+
+            return sequence;
+        }
+
+        private List<List<Object>> alternatives() {
+            ArrayList<List<Object>> alternatives = new ArrayList<>();
+
+            while (true) {
+                alternatives.add(sequence());
+
+                if (i == pattern.length()) {
+                    throw new ExpressException("Invalid route pattern, missing '}': " + pattern);
+                } else if (pattern.charAt(i++) == '}') {
+                    return alternatives;
+                }
+            }
+        }
+    }
+
+    /**
+     * Thompson NFA, nodes are stored as parallel arrays.
+     * SPLIT nodes only have epsilon edges, all others have a single successor.
+     */
+    private static final class Nfa {
+        private int[] type = new int[16];
+        private int[] value = new int[16];
+        private int[] next = new int[16];
+        private int[][] epsilon = new int[16][];
+        private int size;
+
+        int node(int type, int value, int next) {
+            if (size == this.type.length) {
+                this.type = Arrays.copyOf(this.type, size * 2);
+                this.value = Arrays.copyOf(this.value, size * 2);
+                this.next = Arrays.copyOf(this.next, size * 2);
+                this.epsilon = Arrays.copyOf(this.epsilon, size * 2);
+            }
+
+            this.type[size] = type;
+            this.value[size] = value;
+            this.next[size] = next;
+            return size++;
+        }
+
+        /**
+         * Builds the nodes of a sequence from back to front.
+         *
+         * @return The first node of the sequence.
+         */
+        @SuppressWarnings("unchecked")
+        int build(List<Object> sequence, int next) {
+            for (int i = sequence.size() - 1; i >= 0; i--) {
+                Object element = sequence.get(i);
+
+                if (element instanceof Character) {
+                    next = node(CHAR, (Character) element, next);
+                } else if (element instanceof List) {
+                    List<List<Object>> alternatives = (List<List<Object>>) element;
+                    int split = node(SPLIT, 0, -1);
+                    int[] edges = new int[alternatives.size()];
+
+                    for (int j = 0; j < edges.length; j++) {
+                        edges[j] = build(alternatives.get(j), next);
+                    }
+
+                    epsilon[split] = edges;
+                    next = split;
+                } else if ((Integer) element == SEGMENT) {
+                    next = node(SEGMENT, 0, next);
+                } else {
+
+                    // Loop which either leaves or consumes another character
+                    int wildcard = (Integer) element == STAR ? SEGMENT : ANY;
+                    int split = node(SPLIT, 0, -1);
+                    int loop = node(wildcard, 0, split);
+                    epsilon[split] = new int[]{loop, next};
+                    next = split;
+                }
+            }
+
+            return next;
+        }
+
+        boolean accepts(int node, int cls, int[] ascii, HashMap<Character, Integer> unicode) {
+            switch (type[node]) {
+                case CHAR:
+                    char c = (char) value[node];
+                    return (c < 128 ? ascii[c] : unicode.get(c)) == cls;
+                case SEGMENT:
+                    return cls != SLASH;
+                case ANY:
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        /**
+         * @return The sorted nodes which are reachable over epsilon edges, without SPLIT nodes.
+         */
+        int[] closure(int[] nodes) {
+            TreeSet<Integer> closure = new TreeSet<>();
+            boolean[] visited = new boolean[size];
+            ArrayList<Integer> stack = new ArrayList<>();
+
+            for (int node : nodes) {
+                stack.add(node);
+            }
+
+            while (!stack.isEmpty()) {
+                int node = stack.remove(stack.size() - 1);
+
+                if (visited[node]) {
+                    continue;
+                }
+
+                visited[node] = true;
+                if (type[node] == SPLIT) {
+                    for (int edge : epsilon[node]) {
+                        stack.add(edge);
+                    }
+                } else {
+                    closure.add(node);
+                }
+            }
+
+            return closure.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+}
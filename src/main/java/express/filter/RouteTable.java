@@ -0,0 +1,181 @@
+package express.filter;
+
+import express.http.HttpRequestHandler;
+import express.http.RequestMethod;
+import express.http.request.Request;
+import express.http.response.Response;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Immutable snapshot of the handler of a single FilterLayer. Modifications
+ * create a new table, so an published table can be read without locking.
+ */
+final class RouteTable {
+
+    static final RouteTable EMPTY = new RouteTable(new HttpRequestHandler[0]);
+
+    private final HttpRequestHandler[] handlers;
+
+    private RouteTable(HttpRequestHandler[] handlers) {
+        this.handlers = handlers;
+    }
+
+    RouteTable add(int index, HttpRequestHandler handler) {
+        HttpRequestHandler[] copy = new HttpRequestHandler[handlers.length + 1];
+        System.arraycopy(handlers, 0, copy, 0, index);
+        System.arraycopy(handlers, index, copy, index + 1, handlers.length - index);
+        copy[index] = handler;
+        return new RouteTable(copy);
+    }
+
+    RouteTable addAll(List<? extends HttpRequestHandler> handlers) {
+        HttpRequestHandler[] copy = Arrays.copyOf(this.handlers, this.handlers.length + handlers.size());
+
+        for (int i = 0; i < handlers.size(); i++) {
+            copy[this.handlers.length + i] = handlers.get(i);
+        }
+
+        return new RouteTable(copy);
+    }
+
+    int size() {
+        return handlers.length;
+    }
+
+    @SuppressWarnings("unchecked")
+    <T extends HttpRequestHandler> List<T> handlers() {
+        return (List<T>) Collections.unmodifiableList(Arrays.asList(handlers));
+    }
+
+    /**
+     * Fires the matching handler in their order until the response gets closed.
+     *
+     * @param req     The request.
+     * @param res     The response.
+     * @param path    The raw request path.
+     * @param matches The matching handler.
+     */
+    static void fire(Request req, Response res, String path, RouteTree.Matches matches) {
+        for (int i = 0; i < matches.size() && !res.isClosed(); i++) {
+            matches.entry(i).fire(req, res, path, matches.bounds(i));
+        }
+    }
+
+    /**
+     * Builds a radix tree for each request method, the handler keep their index as order.
+     *
+     * @return Fresh trees with new entries.
+     */
+    Trees compile() {
+        return compile(handlers);
+    }
+
+    /**
+     * Builds a radix tree for each request method, mounted routers are inserted
+     * below their root. Every handler gets its position in this order as order.
+     *
+     * @param handlers The handler.
+     * @return Fresh trees with new entries.
+     */
+    static Trees compile(HttpRequestHandler[] handlers) {
+        Trees trees = new Trees();
+
+        for (HttpRequestHandler handler : handlers) {
+            trees.add(handler, "");
+        }
+
+        trees.entries = trees.list.toArray(new RouteTree.Entry[0]);
+        trees.list = null;
+        trees.seal();
+        return trees;
+    }
+
+    /**
+     * The route trees of a table, partitioned by the request method. Handler for
+     * all methods are in a shared tree which will be searched for every request.
+     */
+    static final class Trees {
+        private final RouteTree all = new RouteTree();
+        private final RouteTree[] methods = new RouteTree[RequestMethod.values().length];
+        private final HashMap<String, RouteTree> custom = new HashMap<>();
+        private ArrayList<RouteTree.Entry> list = new ArrayList<>();
+        RouteTree.Entry[] entries;
+
+        void lookup(Request req, String path, RouteTree.Matches matches) {
+
+            // Collect handler for all methods and for the request method
+            all.lookup(path, matches);
+
+            RequestMethod method = req.getRequestMethod();
+            RouteTree tree = method != null ? methods[method.ordinal()] : custom.get(req.getMethod());
+            if (tree != null) {
+                tree.lookup(path, matches);
+            }
+        }
+
+        /**
+         * Insert an handler into the tree of its method.
+         *
+         * @param handler The handler.
+         * @param root    The root of the router which contains the handler, ends with a slash or is empty.
+         */
+        private void add(HttpRequestHandler handler, String root) {
+
+            // Insert mounted routers with their root
+            if (handler instanceof FilterMount) {
+                FilterMount mount = (FilterMount) handler;
+                String mountRoot = FilterImpl.normalizePath(root + mount.getRoot());
+
+                for (HttpRequestHandler child : mount.handlers()) {
+                    add(child, mountRoot);
+                }
+
+                return;
+            }
+
+            FilterImpl filter = handler instanceof FilterImpl ? (FilterImpl) handler : null;
+            RouteTree.Entry entry;
+
+            // Handler without an filter will be fired on every request, also if they belong to a mounted router
+            if (filter == null || filter.isContextAll()) {
+                entry = new RouteTree.Entry(handler, list.size(), "", true);
+            } else {
+                String context = root.isEmpty() ? filter.getFullContext() : FilterImpl.normalizePath(root + filter.getFullContext());
+                entry = new RouteTree.Entry(handler, list.size(), context, false);
+            }
+
+            list.add(entry);
+            get(filter).insert(entry);
+        }
+
+        private void seal() {
+            all.seal();
+            custom.values().forEach(RouteTree::seal);
+
+            for (RouteTree tree : methods) {
+                if (tree != null) {
+                    tree.seal();
+                }
+            }
+        }
+
+        private RouteTree get(FilterImpl filter) {
+            RequestMethod method = filter == null ? RequestMethod.ALL : filter.getMethod();
+
+            if (method == RequestMethod.ALL) {
+                return all;
+            } else if (method == null) {
+                return custom.computeIfAbsent(filter.getRequestMethod(), k -> new RouteTree());
+            } else if (methods[method.ordinal()] == null) {
+                methods[method.ordinal()] = new RouteTree();
+            }
+
+            return methods[method.ordinal()];
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package express.filter;
+
+import express.http.HttpRequestHandler;
+import express.http.request.Request;
+import express.http.response.Response;
+
+import java.util.Arrays;
+
+/**
+ * Radix tree which resolves a raw request path to every handler whose context
+ * matches it. Static parts of a context share compressed edges, ':param' parts
+ * are stored as param nodes and a '*' context is stored as catch-all below the
+ * root of its router, so the lookup cost depends on the depth of the path instead
+ * of the amount of routes. Mounted routers share the node of their root, a single
+ * prefix check skips all of their routes. Glob contexts are combined into one
+ * automaton, which matches all of them in a single pass over the path.
+ */
+final class RouteTree {
+
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final Entry[] NO_ENTRIES = new Entry[0];
+
+    private final Node root = new Node("");
+    private int maxParams;
+
+    // Entries with a pattern context, matched by one automaton
+    private Entry[] patterns = NO_ENTRIES;
+    private RoutePattern automaton;
+
+    /**
+     * Insert an entry at the node of its (already normalized) context.
+     *
+     * @param entry The entry which will be returned if the context matches.
+     */
+    void insert(Entry entry) {
+        if (entry.pattern != null) {
+            patterns = append(patterns, entry);
+            return;
+        }
+
+        String context = entry.context;
+        Node node = root;
+        int count = 0;
+        int i = 0;
+
+        while (i < context.length()) {
+            int colon = context.indexOf(':', i);
+
+            if (colon == -1) {
+                node = insertStatic(node, context, i, context.length());
+                break;
+            }
+
+            node = insertStatic(node, context, i, colon);
+
+            // The param name reaches until the next slash
+            int end = context.indexOf('/', colon);
+            if (end == -1) {
+                end = context.length();
+            }
+
+            if (node.param == null) {
+                node.param = new Node("");
+                node.param.isParam = true;
+            }
+
+            node = node.param;
+            count++;
+            i = end;
+        }
+
+        if (entry.catchAll) {
+            node.catchAll = append(node.catchAll, entry);
+        } else {
+            node.terminals = append(node.terminals, entry);
+        }
+
+        maxParams = Math.max(maxParams, count);
+    }
+
+    /**
+     * Collect every entry which matches the path.
+     *
+     * @param path    The raw request path.
+     * @param matches The target for all matching entries.
+     */
+    void lookup(String path, Matches matches) {
+        lookup(root, path, 0, matches.scratch(maxParams * 2), 0, matches);
+
+        if (automaton != null) {
+            for (int index : automaton.match(path)) {
+                matches.add(patterns[index], null, 0);
+            }
+        }
+    }
+
+    /**
+     * Compiles the contexts of all pattern entries into a single automaton,
+     * needs to be called once all entries have been inserted.
+     */
+    void seal() {
+        if (patterns.length > 0) {
+            String[] contexts = new String[patterns.length];
+
+            for (int i = 0; i < contexts.length; i++) {
+                contexts[i] = patterns[i].context;
+            }
+
+            automaton = RoutePattern.compile(contexts);
+        }
+    }
+
+    private void lookup(Node node, String path, int i, int[] bounds, int depth, Matches matches) {
+        int length = path.length();
+
+        // A catch-all matches if its root ends at a slash
+        if (node.catchAll.length > 0 && (i == length || path.charAt(i) == '/' || (i > 0 && path.charAt(i - 1) == '/'))) {
+            for (Entry entry : node.catchAll) {
+                matches.add(entry, bounds, depth);
+            }
+        }
+
+        // A param at the end of a context also accepts a single trailing slash
+        if (i == length || (node.isParam && i == length - 1 && path.charAt(i) == '/')) {
+            for (Entry entry : node.terminals) {
+                matches.add(entry, bounds, depth);
+            }
+        }
+
+        if (i == length) {
+
+            // A context which ends with a slash after a param also matches without it
+            Node slash = node.isParam ? node.child('/') : null;
+            if (slash != null && slash.prefix.length() == 1) {
+                for (Entry entry : slash.terminals) {
+                    matches.add(entry, bounds, depth);
+                }
+            }
+
+            return;
+        }
+
+        Node child = node.child(path.charAt(i));
+        if (child != null && path.startsWith(child.prefix, i)) {
+            lookup(child, path, i + child.prefix.length(), bounds, depth, matches);
+        }
+
+        if (node.param != null) {
+            int end = path.indexOf('/', i);
+            if (end == -1) {
+                end = length;
+            }
+
+            // A param may be empty if the path goes on with a slash
+            bounds[depth * 2] = i;
+            bounds[depth * 2 + 1] = end;
+            lookup(node.param, path, end, bounds, depth + 1, matches);
+        }
+    }
+
+    private Node insertStatic(Node node, String context, int from, int to) {
+        while (from < to) {
+            Node child = node.child(context.charAt(from));
+
+            if (child == null) {
+                child = new Node(context.substring(from, to));
+                node.children = append(node.children, child);
+                return child;
+            }
+
+            // Find the common prefix and split the edge if necessary
+            String prefix = child.prefix;
+            int common = 0;
+            while (common < prefix.length() && from + common < to && prefix.charAt(common) == context.charAt(from + common)) {
+                common++;
+            }
+
+            if (common < prefix.length()) {
+                child.split(common);
+            }
+
+            node = child;
+            from += common;
+        }
+
+        return node;
+    }
+
+    private static <T> T[] append(T[] arr, T val) {
+        T[] copy = Arrays.copyOf(arr, arr.length + 1);
+        copy[arr.length] = val;
+        return copy;
+    }
+
+    private static final class Node {
+        private String prefix;
+        private boolean isParam;
+        private Node[] children = NO_CHILDREN;
+        private Node param;
+        private Entry[] terminals = NO_ENTRIES;
+        private Entry[] catchAll = NO_ENTRIES;
+
+        Node(String prefix) {
+            this.prefix = prefix;
+        }
+
+        Node child(char c) {
+            for (Node child : children) {
+                if (child.prefix.charAt(0) == c) {
+                    return child;
+                }
+            }
+
+            return null;
+        }
+
+        void split(int at) {
+            Node tail = new Node(prefix.substring(at));
+            tail.children = children;
+            tail.param = param;
+            tail.terminals = terminals;
+            tail.catchAll = catchAll;
+
+            prefix = prefix.substring(0, at);
+            children = new Node[]{tail};
+            param = null;
+            terminals = NO_ENTRIES;
+            catchAll = NO_ENTRIES;
+        }
+    }
+
+    /**
+     * An handler which is stored in the tree, the order is the registration
+     * index of the handler in its layer, including mounted routers. Routes
+     * carry the middleware chain which has been compiled for them.
+     */
+    static final class Entry {
+        final HttpRequestHandler handler;
+        final FilterImpl filter;
+        final int order;
+        final String context;
+        final boolean catchAll;
+        final String[] params;
+        final RoutePattern pattern;
+        DispatchPlan.Link[] chain;
+
+        // Parameter listener of the params, resolved by the dispatch plan
+        HttpRequestHandler[] listeners = FilterImpl.NO_LISTENERS;
+
+        /**
+         * @param handler  The handler.
+         * @param order    The registration index.
+         * @param context  The context including the root of all routers it's mounted in,
+         *                 for catch-all entries only the root.
+         * @param catchAll If every path below the context matches.
+         */
+        Entry(HttpRequestHandler handler, int order, String context, boolean catchAll) {
+            this.handler = handler;
+            this.filter = handler instanceof FilterImpl ? (FilterImpl) handler : null;
+            this.order = order;
+            this.context = context;
+            this.catchAll = catchAll;
+            this.pattern = !catchAll && RoutePattern.isPattern(context) ? RoutePattern.compile(context) : null;
+            this.params = pattern != null ? new String[0] : FilterImpl.parseParamNames(context);
+        }
+
+        /**
+         * Check if the request matches the method and context of this entry.
+         *
+         * @param req  The request.
+         * @param path The raw request path.
+         * @return The bounds of the params in the path, null if the request doesn't match.
+         */
+        int[] match(Request req, String path) {
+            if (filter != null && !filter.matchMethod(req)) {
+                return null;
+            }
+
+            if (pattern != null) {
+                return pattern.matches(path) ? Matches.NO_BOUNDS : null;
+            }
+
+            // Check the path first, the bounds are only allocated for matching paths
+            if (!FilterImpl.matchURL(context, path, null, catchAll)) {
+                return null;
+            } else if (params.length == 0) {
+                return Matches.NO_BOUNDS;
+            }
+
+            int[] bounds = new int[params.length * 2];
+            FilterImpl.matchURL(context, path, bounds, catchAll);
+            return bounds;
+        }
+
+        void fire(Request req, Response res, String path, int[] bounds) {
+            if (filter != null) {
+                filter.apply(req, res, path, params, bounds, listeners);
+            } else {
+                handler.handle(req, res);
+            }
+        }
+    }
+
+    /**
+     * Collects matching entries together with their param bounds and
+     * returns them in registration order. Nothing will be allocated
+     * as long as no entry matches.
+     */
+    static final class Matches {
+        static final int[] NO_BOUNDS = new int[0];
+
+        private Entry[] entries;
+        private int[][] bounds;
+        private int[] scratch = NO_BOUNDS;
+        private int size;
+
+        int[] scratch(int length) {
+            if (scratch.length < length) {
+                scratch = new int[length];
+            }
+
+            return scratch;
+        }
+
+        void add(Entry entry, int[] bounds, int depth) {
+            grow();
+
+            // Keep the list sorted by the registration order
+            int i = size++;
+            while (i > 0 && entries[i - 1].order > entry.order) {
+                entries[i] = entries[i - 1];
+                this.bounds[i] = this.bounds[i - 1];
+                i--;
+            }
+
+            this.entries[i] = entry;
+            this.bounds[i] = depth == 0 ? NO_BOUNDS : Arrays.copyOf(bounds, depth * 2);
+        }
+
+        /**
+         * Appends an entry without sorting it.
+         *
+         * @param entry  The entry.
+         * @param bounds The param bounds of the entry, will not be copied.
+         */
+        void append(Entry entry, int[] bounds) {
+            grow();
+            this.entries[size] = entry;
+            this.bounds[size++] = bounds;
+        }
+
+        /**
+         * Appends all entries of an other match.
+         *
+         * @param matches The matches.
+         */
+        void append(Matches matches) {
+            for (int i = 0; i < matches.size; i++) {
+                append(matches.entries[i], matches.bounds[i]);
+            }
+        }
+
+        private void grow() {
+            if (entries == null) {
+                this.entries = new Entry[4];
+                this.bounds = new int[4][];
+            } else if (size == entries.length) {
+                this.entries = Arrays.copyOf(entries, size * 2);
+                this.bounds = Arrays.copyOf(this.bounds, size * 2);
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        Entry entry(int index) {
+            return entries[index];
+        }
+
+        int[] bounds(int index) {
+            return bounds[index];
+        }
+
+    }
+}
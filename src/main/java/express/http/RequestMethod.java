@@ -29,4 +29,42 @@ public enum RequestMethod {
     public String getMethod() {
         return method;
     }
+
+    /**
+     * Resolves the enum constant for an request method.
+     * The comparison is case sensitive, like the method comparison of filters.
+     *
+     * @param method The request method, eg. GET or '*'.
+     * @return The RequestMethod, null if the method is unknown.
+     */
+    public static RequestMethod of(String method) {
+        if (method == null) {
+            return null;
+        }
+
+        switch (method) {
+            case "GET":
+                return GET;
+            case "POST":
+                return POST;
+            case "PUT":
+                return PUT;
+            case "PATCH":
+                return PATCH;
+            case "DELETE":
+                return DELETE;
+            case "CONNECT":
+                return CONNECT;
+            case "OPTIONS":
+                return OPTIONS;
+            case "TRACE":
+                return TRACE;
+            case "HEAD":
+                return HEAD;
+            case "*":
+                return ALL;
+            default:
+                return null;
+        }
+    }
 }
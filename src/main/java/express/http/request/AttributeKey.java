@@ -0,0 +1,85 @@
+package express.http.request;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Typed key for request attributes. Every key gets a fixed slot when it's created,
+ * a request stores its attributes in an array which is indexed by the slot. Keys
+ * should be created once and kept in a static field.
+ *
+ * @param <T> The type of the attribute value.
+ */
+public final class AttributeKey<T> {
+
+    private static final AtomicInteger SLOTS = new AtomicInteger();
+
+    // Keys by name, used for the name based middleware content
+    private static final ConcurrentHashMap<String, AttributeKey<?>> NAMED = new ConcurrentHashMap<>();
+
+    private final String name;
+    private final Class<T> type;
+    private final int slot;
+
+    private AttributeKey(String name, Class<T> type) {
+        this.name = name;
+        this.type = type;
+        this.slot = SLOTS.getAndIncrement();
+    }
+
+    /**
+     * Create a new key. The first key with a name can also be accessed over
+     * Request.getMiddlewareContent with this name.
+     *
+     * @param name The name.
+     * @param type The type of the value.
+     * @param <T>  The type of the value.
+     * @return The key.
+     */
+    public static <T> AttributeKey<T> create(String name, Class<T> type) {
+        AttributeKey<T> key = new AttributeKey<>(name, type);
+        NAMED.putIfAbsent(name, key);
+        return key;
+    }
+
+    /**
+     * Returns the first key which has been created with a name. Names without a key
+     * don't get a slot, a request keeps their values in a map.
+     *
+     * @param name The name.
+     * @return The key, null if there is none.
+     */
+    static AttributeKey<?> named(String name) {
+        return NAMED.get(name);
+    }
+
+    /**
+     * @return The amount of slots which have been used so far.
+     */
+    static int slots() {
+        return SLOTS.get();
+    }
+
+    /**
+     * @return The name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The type of the value.
+     */
+    public Class<T> getType() {
+        return type;
+    }
+
+    int slot() {
+        return slot;
+    }
+
+    @Override
+    public String toString() {
+        return "AttributeKey(" + name + ", " + type.getSimpleName() + ")";
+    }
+}
@@ -0,0 +1,128 @@
+package express.http.request;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.CRC32;
+
+/**
+ * Result of writing a request body to a file, contains the amount of
+ * bytes and the checksum which has been computed while the body was read.
+ */
+public class BodyTransfer {
+
+    /**
+     * Checksum which will be computed while the body is transferred.
+     */
+    public enum Checksum {
+        NONE, CRC32, SHA_256
+    }
+
+    private final long bytes;
+    private final Checksum checksum;
+    private final String value;
+
+    BodyTransfer(long bytes, Checksum checksum, String value) {
+        this.bytes = bytes;
+        this.checksum = checksum;
+        this.value = value;
+    }
+
+    /**
+     * @return The amount of bytes which have been written.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return The checksum algorithm.
+     */
+    public Checksum getChecksumType() {
+        return checksum;
+    }
+
+    /**
+     * @return The checksum as lower case hex string, null if none has been computed.
+     */
+    public String getChecksum() {
+        return value;
+    }
+
+    /**
+     * Channel which updates the checksum with every byte it reads.
+     */
+    static final class ChecksumChannel implements ReadableByteChannel {
+        private final ReadableByteChannel channel;
+        private final Checksum checksum;
+        private final CRC32 crc;
+        private final MessageDigest digest;
+        private boolean eof;
+
+        ChecksumChannel(ReadableByteChannel channel, Checksum checksum) {
+            this.channel = channel;
+            this.checksum = checksum;
+            this.crc = checksum == Checksum.CRC32 ? new CRC32() : null;
+
+            try {
+                this.digest = checksum == Checksum.SHA_256 ? MessageDigest.getInstance("SHA-256") : null;
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not supported", e);
+            }
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            int start = dst.position();
+            int n = channel.read(dst);
+
+            if (n == -1) {
+                eof = true;
+            } else if (n > 0 && checksum != Checksum.NONE) {
+                ByteBuffer read = dst.duplicate();
+                read.position(start);
+                read.limit(start + n);
+
+                if (crc != null) {
+                    crc.update(read);
+                } else {
+                    digest.update(read);
+                }
+            }
+
+            return n;
+        }
+
+        boolean isEof() {
+            return eof;
+        }
+
+        String value() {
+            if (crc != null) {
+                return String.format("%08x", crc.getValue());
+            } else if (digest != null) {
+                StringBuilder sb = new StringBuilder();
+
+                for (byte b : digest.digest()) {
+                    sb.append(String.format("%02x", b));
+                }
+
+                return sb.toString();
+            }
+
+            return null;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
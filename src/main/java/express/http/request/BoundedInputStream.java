@@ -0,0 +1,57 @@
+package express.http.request;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * InputStream which fails once more than the maximum amount of bytes have been read.
+ * Used for request bodies without a Content-Length, which can't be checked up front.
+ */
+final class BoundedInputStream extends FilterInputStream {
+
+    private final long maxSize;
+    private long read;
+
+    BoundedInputStream(InputStream in, long maxSize) {
+        super(in);
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+
+        if (b != -1) {
+            count(1);
+        }
+
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+
+        if (n > 0) {
+            count(n);
+        }
+
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        count(skipped);
+        return skipped;
+    }
+
+    private void count(long n) throws IOException {
+        read += n;
+
+        if (read > maxSize) {
+            throw new IOException("Request body exceeds the maximum size of " + maxSize + " bytes.");
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package express.http.request;
+
+import express.http.Cookie;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Index of the cookies in all 'Cookie' headers of a request. The headers are
+ * scanned once and only the offsets of each name and value are recorded, a
+ * Cookie object is created when a cookie is requested by its name.
+ */
+final class CookieIndex {
+
+    // Header index, name start, name end, value start and value end of each cookie
+    private static final int FIELDS = 5;
+
+    private List<String> headers;
+    private int[] offsets = new int[FIELDS * 8];
+    private int size;
+
+    /**
+     * Index the cookies of the headers, a previous index is discarded.
+     *
+     * @param headers The values of all 'Cookie' headers, can be null.
+     */
+    void parse(List<String> headers) {
+        this.headers = headers;
+        this.size = 0;
+
+        if (headers == null) {
+            return;
+        }
+
+        for (int h = 0; h < headers.size(); h++) {
+            String header = headers.get(h);
+            int length = header.length();
+            int i = 0;
+
+            while (i < length) {
+
+                // Skip separators and whitespace in front of the name
+                char c = header.charAt(i);
+                if (c == ';' || c == ' ' || c == '\t') {
+                    i++;
+                    continue;
+                }
+
+                int nameStart = i;
+                int eq = -1;
+
+                while (i < length && (c = header.charAt(i)) != ';') {
+                    if (c == '=' && eq == -1) {
+                        eq = i;
+                    }
+
+                    i++;
+                }
+
+                // Pairs without a name or value are ignored
+                if (eq == -1) {
+                    continue;
+                }
+
+                int nameEnd = trimEnd(header, nameStart, eq);
+                int valueStart = trimStart(header, eq + 1, i);
+                int valueEnd = trimEnd(header, valueStart, i);
+
+                // Quotes around the value are not part of it
+                if (valueEnd - valueStart >= 2 && header.charAt(valueStart) == '"' && header.charAt(valueEnd - 1) == '"') {
+                    valueStart++;
+                    valueEnd--;
+                }
+
+                // Names starting with '$' are attributes of the obsolete RFC 2965 format
+                if (nameEnd > nameStart && header.charAt(nameStart) != '$') {
+                    add(h, nameStart, nameEnd, valueStart, valueEnd);
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove all cookies and the reference to the headers.
+     */
+    void clear() {
+        this.headers = null;
+        this.size = 0;
+    }
+
+    /**
+     * Returns a cookie by name, the last one wins if a name occurs multiple times.
+     *
+     * @param name The cookie name.
+     * @return The cookie, null if there is no cookie with this name.
+     */
+    Cookie get(String name) {
+        for (int i = (size - 1) * FIELDS; i >= 0; i -= FIELDS) {
+            int start = offsets[i + 1];
+            int length = offsets[i + 2] - start;
+
+            if (length == name.length() && headers.get(offsets[i]).regionMatches(start, name, 0, length)) {
+                return cookie(i);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Create all cookies.
+     *
+     * @param cookies The map to which the cookies are added, with the name as key.
+     */
+    void putAll(HashMap<String, Cookie> cookies) {
+        for (int i = 0; i < size * FIELDS; i += FIELDS) {
+            Cookie cookie = cookie(i);
+            cookies.put(cookie.getName(), cookie);
+        }
+    }
+
+    /**
+     * @return The amount of cookies.
+     */
+    int size() {
+        return size;
+    }
+
+    private Cookie cookie(int i) {
+        String header = headers.get(offsets[i]);
+        return new Cookie(header.substring(offsets[i + 1], offsets[i + 2]), header.substring(offsets[i + 3], offsets[i + 4]));
+    }
+
+    private void add(int header, int nameStart, int nameEnd, int valueStart, int valueEnd) {
+        int i = size * FIELDS;
+
+        if (i + FIELDS > offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+
+        offsets[i] = header;
+        offsets[i + 1] = nameStart;
+        offsets[i + 2] = nameEnd;
+        offsets[i + 3] = valueStart;
+        offsets[i + 4] = valueEnd;
+        size++;
+    }
+
+    private static int trimStart(String s, int start, int end) {
+        while (start < end && (s.charAt(start) == ' ' || s.charAt(start) == '\t')) {
+            start++;
+        }
+
+        return start;
+    }
+
+    private static int trimEnd(String s, int start, int end) {
+        while (end > start && (s.charAt(end - 1) == ' ' || s.charAt(end - 1) == '\t')) {
+            end--;
+        }
+
+        return end;
+    }
+}
@@ -0,0 +1,386 @@
+package express.http.request;
+
+import express.ExpressException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Streaming parser for multipart/form-data bodies. The body is read once in
+ * fixed-size chunks and each part is copied to its target while the next
+ * delimiter is searched. Parts up to the threshold stay in memory as long as
+ * all parts together don't exceed the memory budget, the others are written
+ * to a temp file, so the heap usage doesn't depend on the size of an upload
+ * or the amount of parts.
+ */
+final class MultipartParser {
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final int MAX_HEADER_SIZE = 8192;
+    private static final int MAX_PARTS = 1000;
+
+    // Bytes which all parts of a body can keep in memory, if the threshold isn't larger
+    private static final long MEMORY_BUDGET = 1024 * 1024;
+
+    private final InputStream in;
+    private final byte[] delimiter;
+    private final long threshold;
+    private final long budget;
+    private final byte[] buffer;
+
+    private long inMemory;      // Bytes of all parts which are kept in memory
+
+    private int pos;
+    private int limit;
+    private boolean eof;
+
+    /**
+     * @param in        The body.
+     * @param boundary  The boundary out of the content-type.
+     * @param threshold Parts which are larger will be written to a temp file, also the minimum memory budget.
+     */
+    MultipartParser(InputStream in, String boundary, long threshold) {
+        this.in = in;
+        this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+        this.threshold = threshold;
+        this.budget = Math.max(threshold, MEMORY_BUDGET);
+        this.buffer = new byte[BUFFER_SIZE + delimiter.length];
+
+        // The first delimiter has no leading line break
+        this.buffer[0] = '\r';
+        this.buffer[1] = '\n';
+        this.limit = 2;
+    }
+
+    /**
+     * Extract the boundary out of a multipart content-type.
+     *
+     * @param contentType The content-type.
+     * @return The boundary, null if the content-type isn't multipart/form-data or has no boundary.
+     */
+    static String boundary(String contentType) {
+        if (!contentType.toLowerCase().startsWith("multipart/form-data")) {
+            return null;
+        }
+
+        String boundary = params(contentType).get("boundary");
+        return boundary == null || boundary.isEmpty() ? null : boundary;
+    }
+
+    /**
+     * Reads all parts, temp files of already read parts are deleted if the body is invalid.
+     *
+     * @return The parts in the order of the body.
+     * @throws IOException      If the body cannot be read.
+     * @throws ExpressException If the body is not valid multipart/form-data.
+     */
+    List<Part> parse() throws IOException {
+        ArrayList<Part> parts = new ArrayList<>();
+
+        try {
+
+            // Skip the preamble
+            skipPart();
+
+            while (!isLast()) {
+                if (parts.size() == MAX_PARTS) {
+                    throw new ExpressException("Multipart body has more than " + MAX_PARTS + " parts.");
+                }
+
+                parts.add(readPart());
+            }
+        } catch (IOException | RuntimeException e) {
+            parts.forEach(Part::delete);
+            throw e;
+        }
+
+        return parts;
+    }
+
+    private Part readPart() throws IOException {
+        HashMap<String, String> headers = new HashMap<>();
+
+        // Read the headers until the empty line
+        String line;
+        while (!(line = readLine()).isEmpty()) {
+            int colon = line.indexOf(':');
+
+            if (colon != -1) {
+                headers.put(line.substring(0, colon).trim().toLowerCase(), line.substring(colon + 1).trim());
+            }
+        }
+
+        HashMap<String, String> disposition = params(headers.getOrDefault("content-disposition", ""));
+        Sink sink = new Sink();
+
+        try {
+            copyPart(sink);
+        } catch (IOException | RuntimeException e) {
+            sink.discard();
+            throw e;
+        }
+
+        return sink.toPart(headers, disposition.get("name"), disposition.get("filename"));
+    }
+
+    /**
+     * Checks what follows a delimiter, '--' ends the body and a line break starts the next part.
+     */
+    private boolean isLast() throws IOException {
+        require(2);
+
+        if (buffer[pos] == '-' && buffer[pos + 1] == '-') {
+            return true;
+        }
+
+        // Transport padding is allowed in front of the line break
+        while (buffer[pos] == ' ' || buffer[pos] == '\t') {
+            pos++;
+            require(2);
+        }
+
+        if (buffer[pos] != '\r' || buffer[pos + 1] != '\n') {
+            throw new ExpressException("Invalid multipart body, expected a line break after the boundary.");
+        }
+
+        pos += 2;
+        return false;
+    }
+
+    private String readLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+        while (true) {
+            require(2);
+
+            if (buffer[pos] == '\r' && buffer[pos + 1] == '\n') {
+                pos += 2;
+                return line.toString("UTF-8");
+            }
+
+            line.write(buffer[pos++]);
+
+            if (line.size() > MAX_HEADER_SIZE) {
+                throw new ExpressException("Multipart header exceeds " + MAX_HEADER_SIZE + " bytes.");
+            }
+        }
+    }
+
+    private void skipPart() throws IOException {
+        copyPart(null);
+    }
+
+    /**
+     * Copies everything up to the next delimiter, which will be consumed.
+     *
+     * @param sink The target, null to skip the content.
+     */
+    private void copyPart(Sink sink) throws IOException {
+        while (true) {
+            int found = indexOfDelimiter();
+
+            if (found != -1) {
+                if (sink != null) {
+                    sink.write(buffer, pos, found - pos);
+                }
+
+                pos = found + delimiter.length;
+                return;
+            }
+
+            // Everything except a possible start of the delimiter can be copied
+            int safe = Math.max(pos, limit - delimiter.length + 1);
+            if (sink != null) {
+                sink.write(buffer, pos, safe - pos);
+            }
+
+            pos = safe;
+            if (!fill()) {
+                throw new ExpressException("Invalid multipart body, missing the closing boundary.");
+            }
+        }
+    }
+
+    private int indexOfDelimiter() {
+        int last = limit - delimiter.length;
+
+        outer:
+        for (int i = pos; i <= last; i++) {
+            for (int j = 0; j < delimiter.length; j++) {
+                if (buffer[i + j] != delimiter[j]) {
+                    continue outer;
+                }
+            }
+
+            return i;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Makes sure that a certain amount of bytes is available at the current position.
+     */
+    private void require(int n) throws IOException {
+        while (limit - pos < n) {
+            if (!fill()) {
+                throw new ExpressException("Invalid multipart body, unexpected end.");
+            }
+        }
+    }
+
+    /**
+     * Moves the remaining bytes to the start of the buffer and reads more.
+     *
+     * @return False if the end of the body has been reached.
+     */
+    private boolean fill() throws IOException {
+        if (eof) {
+            return false;
+        }
+
+        System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+        limit -= pos;
+        pos = 0;
+
+        int n = in.read(buffer, limit, buffer.length - limit);
+        if (n == -1) {
+            eof = true;
+            return false;
+        }
+
+        limit += n;
+        return true;
+    }
+
+    /**
+     * Parses the parameters of an header value like 'form-data; name="a"'.
+     */
+    private static HashMap<String, String> params(String value) {
+        HashMap<String, String> params = new HashMap<>();
+        int i = value.indexOf(';');
+
+        while (i != -1 && i < value.length()) {
+            int eq = value.indexOf('=', i);
+            if (eq == -1) {
+                break;
+            }
+
+            String key = value.substring(i + 1, eq).trim().toLowerCase();
+            StringBuilder val = new StringBuilder();
+            int j = eq + 1;
+
+            while (j < value.length() && value.charAt(j) == ' ') {
+                j++;
+            }
+
+            if (j < value.length() && value.charAt(j) == '"') {
+
+                // Quoted value, backslash escapes the next character
+                for (j++; j < value.length() && value.charAt(j) != '"'; j++) {
+                    if (value.charAt(j) == '\\' && j + 1 < value.length()) {
+                        j++;
+                    }
+
+                    val.append(value.charAt(j));
+                }
+
+                j = value.indexOf(';', j);
+            } else {
+                int end = value.indexOf(';', j);
+                val.append(value, j, end == -1 ? value.length() : end);
+                j = end;
+            }
+
+            params.put(key, val.toString().trim());
+            i = j;
+        }
+
+        return params;
+    }
+
+    /**
+     * Collects the content of a part, in memory until the threshold or the memory budget is reached.
+     */
+    private final class Sink {
+        private ByteArrayOutputStream memory = new ByteArrayOutputStream();
+        private Path file;
+        private FileChannel channel;
+        private long size;
+
+        void write(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return;
+            }
+
+            size += len;
+
+            if (channel == null && (size > threshold || inMemory + len > budget)) {
+                file = Files.createTempFile("express-", ".part");
+
+                try {
+                    channel = FileChannel.open(file, StandardOpenOption.WRITE);
+                } catch (IOException | RuntimeException e) {
+                    Files.deleteIfExists(file);
+                    throw e;
+                }
+
+                write(ByteBuffer.wrap(memory.toByteArray()));
+                inMemory -= memory.size();
+                memory = null;
+            }
+
+            if (channel != null) {
+                write(ByteBuffer.wrap(b, off, len));
+            } else {
+                memory.write(b, off, len);
+                inMemory += len;
+            }
+        }
+
+        private void write(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        Part toPart(HashMap<String, String> headers, String name, String filename) throws IOException {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    Files.deleteIfExists(file);
+                    throw e;
+                }
+
+                return new Part(headers, name, filename, null, file, size);
+            }
+
+            return new Part(headers, name, filename, memory.toByteArray(), null, size);
+        }
+
+        void discard() throws IOException {
+            if (memory != null) {
+                inMemory -= memory.size();
+            }
+
+            if (channel != null) {
+                try {
+                    channel.close();
+                } finally {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package express.http.request;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * A single part of a multipart/form-data body. Small parts are kept in memory,
+ * larger ones have been written to a temp file which will be deleted after the
+ * request has been handled, unless it has been moved with transferTo.
+ */
+public class Part {
+
+    private final Map<String, String> headers;
+    private final String name;
+    private final String filename;
+    private final String contentType;
+    private final long size;
+
+    private final byte[] bytes;
+    private Path file;
+    private boolean moved;
+
+    Part(Map<String, String> headers, String name, String filename, byte[] bytes, Path file, long size) {
+        this.headers = headers;
+        this.name = name;
+        this.filename = filename;
+        this.contentType = headers.getOrDefault("content-type", "text/plain");
+        this.bytes = bytes;
+        this.file = file;
+        this.size = size;
+    }
+
+    /**
+     * @return The name of the form field.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the filename which has been sent by the client, it's not sanitized and
+     * can contain a path. Don't use it as path without removing everything except the name.
+     *
+     * @return The filename, null if the part is no file.
+     */
+    public String getFilename() {
+        return filename;
+    }
+
+    /**
+     * @return The content-type of the part, text/plain if there was none.
+     */
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * Returns an header of the part.
+     *
+     * @param name The header name, case insensitive.
+     * @return The value, null if there is none.
+     */
+    public String getHeader(String name) {
+        return headers.get(name.toLowerCase());
+    }
+
+    /**
+     * @return All headers of the part, with lower case names.
+     */
+    public Map<String, String> getHeaders() {
+        return Collections.unmodifiableMap(headers);
+    }
+
+    /**
+     * @return The size of the content in bytes.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return True if the part has a filename.
+     */
+    public boolean isFile() {
+        return filename != null;
+    }
+
+    /**
+     * @return True if the content is kept in memory, false if it has been written to a temp file.
+     */
+    public boolean isInMemory() {
+        return bytes != null;
+    }
+
+    /**
+     * @return The temp file which contains the content, null if it's kept in memory.
+     */
+    public Path getPath() {
+        return file;
+    }
+
+    /**
+     * Returns the content, a temp file will be read completely into memory.
+     *
+     * @return The content.
+     * @throws IOException If the temp file cannot be read.
+     */
+    public byte[] getBytes() throws IOException {
+        return bytes != null ? bytes : Files.readAllBytes(file);
+    }
+
+    /**
+     * @return The content as UTF8 string, null if the temp file cannot be read.
+     */
+    public String getString() {
+        try {
+            return new String(getBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return An InputStream of the content.
+     * @throws IOException If the temp file cannot be opened.
+     */
+    public InputStream getInputStream() throws IOException {
+        return bytes != null ? new ByteArrayInputStream(bytes) : Files.newInputStream(file);
+    }
+
+    /**
+     * Write the content to a file, a temp file will be moved. If the target
+     * already exists it will be replaced.
+     *
+     * @param target The target file.
+     * @throws IOException If an IO-Error occurs.
+     */
+    public void transferTo(Path target) throws IOException {
+        if (bytes != null) {
+            Files.write(target, bytes);
+            return;
+        }
+
+        Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+
+        // The file has been moved, it shouldn't be deleted anymore
+        this.file = target;
+        this.moved = true;
+    }
+
+    /**
+     * Delete the temp file of this part, if there is one and it hasn't been moved.
+     */
+    void delete() {
+        if (file != null && !moved) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
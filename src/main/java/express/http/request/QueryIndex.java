@@ -0,0 +1,187 @@
+package express.http.request;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Index of the key-values in a raw url-query. The query is scanned once and
+ * only the offsets of each key and value are recorded, a value is decoded the
+ * first time it's requested. Keys can occur multiple times.
+ */
+final class QueryIndex {
+
+    // Key start, key end, value start, value end and encoding flags of each pair
+    private static final int FIELDS = 5;
+
+    // Flags if the key or value contains '%' or '+' and needs to be decoded
+    private static final int ENCODED_KEY = 1;
+    private static final int ENCODED_VALUE = 2;
+
+    private String query;
+    private int[] offsets = new int[FIELDS * 8];
+    private String[] keys = new String[8];
+    private String[] values = new String[8];
+    private int size;
+
+    /**
+     * Index the key-values of a query, a previous index is discarded.
+     *
+     * @param rawQuery The raw query, can be null.
+     */
+    void parse(String rawQuery) {
+        clear();
+        this.query = rawQuery;
+
+        if (rawQuery == null) {
+            return;
+        }
+
+        int length = rawQuery.length();
+        int start = 0;
+
+        while (start < length) {
+            int end = rawQuery.indexOf('&', start);
+            if (end == -1) {
+                end = length;
+            }
+
+            // Empty pairs like in 'a=1&&b=2' are ignored
+            if (end > start) {
+                int eq = -1;
+                int flags = 0;
+
+                for (int i = start; i < end; i++) {
+                    char c = rawQuery.charAt(i);
+
+                    if (c == '=' && eq == -1) {
+                        eq = i;
+                    } else if (c == '%' || c == '+') {
+                        flags |= eq == -1 ? ENCODED_KEY : ENCODED_VALUE;
+                    }
+                }
+
+                // A key without '=' has an empty value
+                if (eq == -1) {
+                    add(start, end, end, end, flags);
+                } else {
+                    add(start, eq, eq + 1, end, flags);
+                }
+            }
+
+            start = end + 1;
+        }
+    }
+
+    /**
+     * Remove all key-values and the reference to the query.
+     */
+    void clear() {
+        Arrays.fill(keys, 0, size, null);
+        Arrays.fill(values, 0, size, null);
+        this.query = null;
+        this.size = 0;
+    }
+
+    /**
+     * Returns the value of a key, the last one wins if a key occurs multiple times.
+     *
+     * @param name The decoded key.
+     * @return The decoded value, null if there is no such key.
+     */
+    String get(String name) {
+        for (int i = size - 1; i >= 0; i--) {
+            if (keyEquals(i, name)) {
+                return value(i);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns all values of a key.
+     *
+     * @param name The decoded key.
+     * @return The decoded values in the order of the query, empty if there is no such key.
+     */
+    List<String> getAll(String name) {
+        List<String> all = Collections.emptyList();
+
+        for (int i = 0; i < size; i++) {
+            if (keyEquals(i, name)) {
+                if (all.isEmpty()) {
+                    all = new ArrayList<>(2);
+                }
+
+                all.add(value(i));
+            }
+        }
+
+        return all;
+    }
+
+    /**
+     * Decode all key-values.
+     *
+     * @param queries The map to which the key-values are added, the last value wins for repeated keys.
+     */
+    void putAll(HashMap<String, String> queries) {
+        for (int i = 0; i < size; i++) {
+            queries.put(key(i), value(i));
+        }
+    }
+
+    private boolean keyEquals(int i, String name) {
+        int o = i * FIELDS;
+
+        // Plain keys can be compared without creating a string
+        if ((offsets[o + 4] & ENCODED_KEY) == 0) {
+            int length = offsets[o + 1] - offsets[o];
+            return length == name.length() && query.regionMatches(offsets[o], name, 0, length);
+        }
+
+        return key(i).equals(name);
+    }
+
+    private String key(int i) {
+        if (keys[i] == null) {
+            int o = i * FIELDS;
+            keys[i] = (offsets[o + 4] & ENCODED_KEY) == 0
+                    ? query.substring(offsets[o], offsets[o + 1])
+                    : RequestUtils.decode(query, offsets[o], offsets[o + 1]);
+        }
+
+        return keys[i];
+    }
+
+    private String value(int i) {
+        if (values[i] == null) {
+            int o = i * FIELDS;
+            values[i] = (offsets[o + 4] & ENCODED_VALUE) == 0
+                    ? query.substring(offsets[o + 2], offsets[o + 3])
+                    : RequestUtils.decode(query, offsets[o + 2], offsets[o + 3]);
+        }
+
+        return values[i];
+    }
+
+    private void add(int keyStart, int keyEnd, int valueStart, int valueEnd, int flags) {
+        int o = size * FIELDS;
+
+        if (size == keys.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            keys = Arrays.copyOf(keys, keys.length * 2);
+            values = Arrays.copyOf(values, values.length * 2);
+        }
+
+        offsets[o] = keyStart;
+        offsets[o + 1] = keyEnd;
+        offsets[o + 2] = valueStart;
+        offsets[o + 3] = valueEnd;
+        offsets[o + 4] = flags;
+        size++;
+    }
+}
@@ -4,9 +4,10 @@ import com.sun.net.httpserver.Headers;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpsExchange;
 import express.Express;
+import express.ExpressException;
 import express.filter.Filter;
 import express.http.Cookie;
-import express.utils.Utils;
+import express.http.RequestMethod;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -14,51 +15,82 @@ import java.io.OutputStream;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.time.Instant;
 import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * @author Simon Reinisch
  * <p>
- * Class encapsulating HTTP request data
+ * Class encapsulating HTTP request data. Queries, cookies, the authorization
+ * and form data are parsed the first time they are accessed.
  */
 public class Request {
 
-    private final Express express;
-
-    private final String protocol;                      // Request protocol
-    private final URI uri;                              // Request uri
-    private final InputStream body;                     // Request body
-    private final Headers headers;                      // Request Headers
-    private final boolean secure;
-    private final String contentType;                   // Request content-type
-    private final long contentLength;                   // Request content-length
-    private final String method;                        // Request method
-    private final List<Authorization> auth;             // Authorization header parsed
-    private final InetSocketAddress inet;               // Client socket address
-
-    private final HashMap<String, Object> middleware;   // Middleware Data
-    private final HashMap<String, Cookie> cookies;      // Request cookies
-    private final HashMap<String, String> queries;      // URL Query parameters
-    private final HashMap<String, String> formQueries; // Form query parameters (application/x-www-form-urlencoded)
+    // Maximum amount of bytes per FileChannel.transferFrom call
+    private static final long TRANSFER_CHUNK = 1024 * 1024;
+
+    // Flags for the maps which have been parsed
+    private static final int COOKIES = 1;
+    private static final int QUERIES = 2;
+    private static final int FORM_QUERIES = 4;
+    private static final int COOKIE_INDEX = 8;
+    private static final int QUERY_INDEX = 16;
+
+    // Indices and attribute slots of the last recycled request of each thread
+    private static final ThreadLocal<Buffers> POOL = new ThreadLocal<>();
+
+    private Express express;
+
+    private String protocol;                            // Request protocol
+    private URI uri;                                    // Request uri
+    private InputStream body;                           // Request body
+    private Headers headers;                            // Request Headers
+    private boolean secure;
+    private String contentType;                         // Request content-type
+    private long contentLength;                         // Request content-length
+    private String method;                              // Request method
+    private RequestMethod requestMethod;                // Request method, null if unknown
+    private InetSocketAddress inet;                     // Client socket address
+
+    // Parsed on first access
+    private int parsed;                                 // Flags of the parsed maps
+    private List<Authorization> auth;                   // Authorization header parsed
+    private Object[] attributes;                        // Attribute values by the slot of their key
+    private HashMap<String, Object> middlewareContent;  // Middleware content whose name has no key
+    private CookieIndex cookieIndex;                    // Offsets of the cookies in the headers
+    private HashMap<String, Cookie> cookies;            // Request cookies, created if all are requested
+    private QueryIndex queryIndex;                      // Offsets of the key-values in the raw query
+    private HashMap<String, String> queries;            // URL Query parameters, created if all are requested
+    private HashMap<String, String> formQueries;        // Form query parameters (application/x-www-form-urlencoded)
+    private List<Part> parts;                           // Parts of a multipart/form-data body
+    private ExpressException bodyError;                 // Failure of the form or multipart parser, the body is consumed
 
     private HashMap<String, String> params;             // URL Params, would be added in ExpressFilterImpl
+    private String paramPath;                           // Raw path which contains the params
+    private String[] paramNames;                        // Param names, decoded on access
+    private int[] paramBounds;                          // Start and end index of each param in paramPath
     private String context;                             // Context which matched
 
-    {
-        this.middleware = new HashMap<>();
-        this.params = new HashMap<>();
-    }
+    private Buffers buffers;                            // Pooled internals, null if the request isn't pooled
+    private boolean recycled;
 
     public Request(HttpExchange exchange, Express express) {
         this.express = express;
         this.method = exchange.getRequestMethod();
+        this.requestMethod = RequestMethod.of(method);
         this.uri = exchange.getRequestURI();
         this.headers = exchange.getRequestHeaders();
         this.body = exchange.getRequestBody();
@@ -73,27 +105,105 @@ public class Request {
 
         // Check if the request contains an body-content
         this.contentType = headers.get("Content-Type") == null ? "" : headers.get("Content-Type").get(0);
+    }
 
-        // Check if the request has an Authorization header
-        this.auth = Authorization.get(this);
+    /**
+     * Create a request which reuses the cookie and query index and the attribute slots of
+     * the last recycled request of this thread. Only these internals are shared, the request
+     * object itself is new, so a handler which keeps an old request can never reach this one.
+     * Called by express if recycling is enabled.
+     *
+     * @param exchange The exchange.
+     * @param express  The express instance.
+     * @return The request.
+     */
+    public static Request pooled(HttpExchange exchange, Express express) {
+        Request request = new Request(exchange, express);
+        Buffers buffers = POOL.get();
+
+        if (buffers != null) {
+            POOL.remove();
+            request.cookieIndex = buffers.cookieIndex;
+            request.queryIndex = buffers.queryIndex;
+            request.attributes = buffers.attributes;
+        } else {
+            buffers = new Buffers();
+        }
 
-        // Check if the request contains x-www-form-urlencoded form data
-        this.formQueries = contentType.startsWith("application/x-www-form-urlencoded")
-                ? RequestUtils.parseRawQuery(Utils.streamToString(body))
-                : new HashMap<>();
+        request.buffers = buffers;
+        return request;
+    }
 
-        // Parse query and cookies, both returns not null if there is nothing
-        this.queries = RequestUtils.parseRawQuery(exchange.getRequestURI().getRawQuery());
-        this.cookies = RequestUtils.parseCookies(headers);
+    /**
+     * Invalidate the request after the response has been sent, every following call throws an
+     * IllegalStateException. The internals of a pooled request are cleared and returned to the
+     * pool of the current thread. Called by express if recycling is enabled.
+     */
+    public void recycle() {
+        if (recycled) {
+            return;
+        }
+
+        if (buffers != null) {
+            if (cookieIndex != null) cookieIndex.clear();
+            if (queryIndex != null) queryIndex.clear();
+            if (attributes != null) Arrays.fill(attributes, null);
+
+            buffers.cookieIndex = cookieIndex;
+            buffers.queryIndex = queryIndex;
+            buffers.attributes = attributes;
+            POOL.set(buffers);
+        }
+
+        this.buffers = null;
+        this.cookieIndex = null;
+        this.queryIndex = null;
+        this.attributes = null;
+        this.middlewareContent = null;
+        this.cookies = null;
+        this.queries = null;
+        this.formQueries = null;
+        this.auth = null;
+        this.parts = null;
+        this.bodyError = null;
+        this.params = null;
+        this.paramPath = null;
+        this.paramNames = null;
+        this.paramBounds = null;
+        this.context = null;
+        this.express = null;
+        this.uri = null;
+        this.body = null;
+        this.headers = null;
+        this.inet = null;
+        this.recycled = true;
+    }
+
+    private void checkActive() {
+        if (recycled) {
+            throw new IllegalStateException("Request has been recycled, it cannot be used after the response has been sent.");
+        }
     }
 
     /**
      * @return The request body as InputStream
      */
     public InputStream getBody() {
+        checkActive();
         return body;
     }
 
+    /**
+     * Limit the amount of bytes which can be read from the body, reading more fails with
+     * an IOException. Used for bodies without a Content-Length, which can't be checked up front.
+     *
+     * @param maxSize The maximum body size in bytes.
+     */
+    public void limitBody(long maxSize) {
+        checkActive();
+        this.body = new BoundedInputStream(body, maxSize);
+    }
+
     /**
      * Pipe the body from this request to an OutputStream.
      *
@@ -102,11 +212,13 @@ public class Request {
      * @throws IOException If an IO-Error occurs.
      */
     public void pipe(OutputStream os, int bufferSize) throws IOException {
-        byte[] buffer = new byte[bufferSize];
-        int n;
-        while ((n = body.read(buffer)) != -1)
-            os.write(buffer, 0, n);
-        os.close();
+        checkActive();
+        try (OutputStream out = os) {
+            byte[] buffer = new byte[bufferSize];
+            int n;
+            while ((n = body.read(buffer)) != -1)
+                out.write(buffer, 0, n);
+        }
     }
 
     /**
@@ -118,6 +230,7 @@ public class Request {
      * @throws IOException If an IO-Error occurs.
      */
     public void pipe(Path f, int bufferSize) throws IOException {
+        checkActive();
         if (Files.exists(f))
             return;
 
@@ -125,6 +238,68 @@ public class Request {
         pipe(Files.newOutputStream(f), bufferSize);
     }
 
+    /**
+     * Write the body to a file, an existing file will be replaced once the whole body has been written.
+     *
+     * @param f The target file.
+     * @return The amount of written bytes.
+     * @throws IOException If an IO-Error occurs.
+     */
+    public BodyTransfer transferTo(Path f) throws IOException {
+        return transferTo(f, BodyTransfer.Checksum.NONE, false);
+    }
+
+    /**
+     * Write the body to a file with FileChannel.transferFrom, an existing file will be replaced.
+     * The body is written into a temp file next to the target, which is moved to the target once
+     * the whole body has been read, so a failed transfer leaves the target untouched.
+     * The checksum is computed while the body is read, no second pass over the file is needed.
+     *
+     * @param f        The target file.
+     * @param checksum The checksum which will be computed.
+     * @param sync     If the file should be forced to the storage device before this method returns.
+     * @return The amount of written bytes and the checksum.
+     * @throws IOException If an IO-Error occurs.
+     */
+    public BodyTransfer transferTo(Path f, BodyTransfer.Checksum checksum, boolean sync) throws IOException {
+        checkActive();
+        BodyTransfer.ChecksumChannel source = new BodyTransfer.ChecksumChannel(Channels.newChannel(body), checksum);
+        Path temp = f.resolveSibling("." + f.getFileName() + "." + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+        BodyTransfer transfer;
+
+        try {
+            try (FileChannel target = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                long position = 0;
+
+                while (!source.isEof()) {
+                    position += target.transferFrom(source, position, TRANSFER_CHUNK);
+                }
+
+                if (sync) {
+                    target.force(true);
+                }
+
+                transfer = new BodyTransfer(position, checksum, source.value());
+            }
+
+            try {
+                Files.move(temp, f, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, f, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | RuntimeException e) {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+
+            throw e;
+        }
+
+        return transfer;
+    }
+
     /**
      * Get a request cookie by name.
      *
@@ -132,7 +307,8 @@ public class Request {
      * @return The cookie, null if there is no cookie with this name.
      */
     public Cookie getCookie(String name) {
-        return cookies.get(name);
+        checkActive();
+        return (parsed & COOKIES) != 0 ? cookies.get(name) : getCookieIndex().get(name);
     }
 
     /**
@@ -141,17 +317,54 @@ public class Request {
      * @return All cookies.
      */
     public HashMap<String, Cookie> getCookies() {
+        checkActive();
+        if ((parsed & COOKIES) == 0) {
+            if (cookies == null) {
+                cookies = new HashMap<>();
+            }
+
+            getCookieIndex().putAll(cookies);
+            parsed |= COOKIES;
+        }
+
         return cookies;
     }
 
+    private CookieIndex getCookieIndex() {
+        if ((parsed & COOKIE_INDEX) == 0) {
+            if (cookieIndex == null) {
+                cookieIndex = new CookieIndex();
+            }
+
+            cookieIndex.parse(headers.get("Cookie"));
+            parsed |= COOKIE_INDEX;
+        }
+
+        return cookieIndex;
+    }
+
     /**
      * Add a the content from a middleware
      *
      * @param middleware     The middleware
      * @param middlewareData The data from the middleware
      */
+    @SuppressWarnings("unchecked")
     public void addMiddlewareContent(Filter middleware, Object middlewareData) {
-        this.middleware.put(middleware.getName(), middlewareData);
+        checkActive();
+        AttributeKey<?> key = AttributeKey.named(middleware.getName());
+
+        if (key != null) {
+            setAttribute((AttributeKey<Object>) key, middlewareData);
+            return;
+        }
+
+        // Names without a key are kept per request, they don't use a slot
+        if (middlewareContent == null) {
+            middlewareContent = new HashMap<>();
+        }
+
+        middlewareContent.put(middleware.getName(), middlewareData);
     }
 
     /**
@@ -162,13 +375,59 @@ public class Request {
      * @return The middleware object
      */
     public Object getMiddlewareContent(String name) {
-        return middleware.get(name);
+        checkActive();
+        AttributeKey<?> key = AttributeKey.named(name);
+        Object value = key != null ? getAttribute(key) : null;
+
+        // The value may have been added before the key was created
+        return value == null && middlewareContent != null ? middlewareContent.get(name) : value;
+    }
+
+    /**
+     * Set an attribute, which can be read by all following handler.
+     *
+     * @param key   The key.
+     * @param value The value, null removes the attribute.
+     * @param <T>   The type of the value.
+     */
+    public <T> void setAttribute(AttributeKey<T> key, T value) {
+        checkActive();
+        int slot = key.slot();
+
+        if (attributes == null) {
+            if (value == null) {
+                return;
+            }
+
+            attributes = new Object[Math.max(AttributeKey.slots(), slot + 1)];
+        } else if (slot >= attributes.length) {
+
+            // The key has been created after the first attribute was set
+            attributes = Arrays.copyOf(attributes, Math.max(AttributeKey.slots(), slot + 1));
+        }
+
+        attributes[slot] = value;
+    }
+
+    /**
+     * Returns an attribute.
+     *
+     * @param key The key.
+     * @param <T> The type of the value.
+     * @return The value, null if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getAttribute(AttributeKey<T> key) {
+        checkActive();
+        int slot = key.slot();
+        return attributes != null && slot < attributes.length ? (T) attributes[slot] : null;
     }
 
     /**
      * @return The request user-agent.
      */
     public String getUserAgent() {
+        checkActive();
         return headers.get("User-agent").get(0);
     }
 
@@ -176,6 +435,7 @@ public class Request {
      * @return The request host.
      */
     public String getHost() {
+        checkActive();
         return headers.get("Host").get(0);
     }
 
@@ -185,6 +445,7 @@ public class Request {
      * @return The InetAddress.
      */
     public InetAddress getAddress() {
+        checkActive();
         return inet.getAddress();
     }
 
@@ -194,6 +455,7 @@ public class Request {
      * @return The IP-Address.
      */
     public String getIp() {
+        checkActive();
         return inet.getAddress().getHostAddress();
     }
 
@@ -201,6 +463,7 @@ public class Request {
      * @return The request content-type.
      */
     public String getContentType() {
+        checkActive();
         return contentType;
     }
 
@@ -210,6 +473,7 @@ public class Request {
      * @return The content-length, -1 if the header was invalid.
      */
     public long getContentLength() {
+        checkActive();
         return contentLength;
     }
 
@@ -217,6 +481,7 @@ public class Request {
      * @return The request path.
      */
     public String getPath() {
+        checkActive();
         return this.uri.getPath();
     }
 
@@ -224,6 +489,7 @@ public class Request {
      * @return The original request uri.
      */
     public URI getURI() {
+        checkActive();
         return this.uri;
     }
 
@@ -231,9 +497,18 @@ public class Request {
      * @return The request-method.
      */
     public String getMethod() {
+        checkActive();
         return this.method;
     }
 
+    /**
+     * @return The request-method, null if it's not one of the known methods.
+     */
+    public RequestMethod getRequestMethod() {
+        checkActive();
+        return this.requestMethod;
+    }
+
     /**
      * Checks if the connection is 'fresh'
      * It is true if the cache-control request header doesn't have a no-cache directive, the if-modified-since request header is specified
@@ -242,6 +517,7 @@ public class Request {
      * @return True if the connection is fresh, false otherwise.
      */
     public boolean isFresh() {
+        checkActive();
 
         if (headers.containsKey("cache-control") && headers.get("cache-control").get(0) != null && headers.get("cache-control").get(0).equals("no-cache"))
             return true;
@@ -286,6 +562,7 @@ public class Request {
      * @return The opposite of req.fresh;
      */
     public boolean isStale() {
+        checkActive();
         return !isFresh();
     }
 
@@ -295,6 +572,7 @@ public class Request {
      * @return True when the connection is over HTTPS, false otherwise.
      */
     public boolean isSecure() {
+        checkActive();
         return secure;
     }
 
@@ -305,6 +583,7 @@ public class Request {
      * @return True if the 'X-Requested-With' header field is 'XMLHttpRequest'.
      */
     public boolean isXHR() {
+        checkActive();
         return headers.containsKey("X-Requested-With") && !headers.get("X-Requested-With").isEmpty() && headers.get("X-Requested-With").get(0).equals("XMLHttpRequest");
     }
 
@@ -314,6 +593,7 @@ public class Request {
      * @return The connection protocol.
      */
     public String getProtocol() {
+        checkActive();
         return protocol;
     }
 
@@ -321,6 +601,11 @@ public class Request {
      * @return A list of authorization options in this request
      */
     public List<Authorization> getAuthorization() {
+        checkActive();
+        if (auth == null) {
+            auth = Authorization.get(this);
+        }
+
         return Collections.unmodifiableList(auth);
     }
 
@@ -328,17 +613,83 @@ public class Request {
      * @return True if there was an Authorization header and the Authorization object was successfully created.
      */
     public boolean hasAuthorization() {
-        return !auth.isEmpty();
+        checkActive();
+        return !getAuthorization().isEmpty();
     }
 
     /**
      * Returns a query from a form which uses the 'application/x-www-form-urlencoded' request header.
+     * The body will be read on first access, it's empty if it has been consumed before.
      *
      * @param name The name.
      * @return The value, null if there is none.
+     * @throws ExpressException If the body is larger than the maximum form size of express or cannot be read.
      */
     public String getFormQuery(String name) {
-        return formQueries.get(name);
+        return getFormQuerys().get(name);
+    }
+
+    /**
+     * Returns the parts of a multipart/form-data body. The body will be read on first
+     * access, large parts are written to temp files which are deleted after the request
+     * has been handled.
+     *
+     * @return The parts in the order of the body, empty if the request isn't multipart/form-data.
+     * @throws ExpressException If the body is invalid or cannot be read, the same exception will be
+     *                          thrown by every later call.
+     */
+    public List<Part> getParts() {
+        checkActive();
+        if (parts == null) {
+            String boundary = MultipartParser.boundary(contentType);
+
+            if (boundary == null) {
+                return parts = Collections.emptyList();
+            }
+
+            // The body has been partly read by the failed parse, it must not be parsed again
+            if (bodyError != null) {
+                throw bodyError;
+            }
+
+            long threshold = express != null ? express.getMultipartThreshold() : 64 * 1024;
+            try {
+                parts = Collections.unmodifiableList(new MultipartParser(body, boundary, threshold).parse());
+            } catch (IOException e) {
+                throw bodyError = new ExpressException("Failed to read multipart body: " + e.getMessage(), e);
+            } catch (ExpressException e) {
+                throw bodyError = e;
+            }
+        }
+
+        return parts;
+    }
+
+    /**
+     * Returns the first part of a multipart/form-data body with this name.
+     *
+     * @param name The name of the form field.
+     * @return The part, null if there is none.
+     * @throws ExpressException If the body is invalid or cannot be read.
+     */
+    public Part getPart(String name) {
+        for (Part part : getParts()) {
+            if (name.equals(part.getName())) {
+                return part;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Deletes the temp files of multipart uploads which haven't been moved.
+     * Called by express after the request has been handled.
+     */
+    public void cleanup() {
+        if (parts != null) {
+            parts.forEach(Part::delete);
+        }
     }
 
     /**
@@ -348,7 +699,21 @@ public class Request {
      * @return The value, null if there is none.
      */
     public String getParam(String param) {
-        return params.get(param);
+        checkActive();
+        if (params != null) {
+            return params.get(param);
+        }
+
+        // Decode only the requested param
+        if (paramNames != null) {
+            for (int i = 0; i < paramNames.length; i++) {
+                if (paramNames[i].equals(param)) {
+                    return RequestUtils.decode(paramPath.substring(paramBounds[i * 2], paramBounds[i * 2 + 1]));
+                }
+            }
+        }
+
+        return null;
     }
 
     /**
@@ -358,15 +723,67 @@ public class Request {
      * @return The value, null if there is none.
      */
     public String getQuery(String name) {
-        return queries.get(name);
+        checkActive();
+        return (parsed & QUERIES) != 0 ? queries.get(name) : getQueryIndex().get(name);
+    }
+
+    /**
+     * Returns all values of a key which occurs multiple times in the url-query, like 'id' in '?id=1&amp;id=2'.
+     *
+     * @param name The name.
+     * @return The values in the order of the query, empty if there is none.
+     */
+    public List<String> getQueryValues(String name) {
+        checkActive();
+        return Collections.unmodifiableList(getQueryIndex().getAll(name));
     }
 
     /**
      * Returns all query's from an x-www-form-urlencoded body.
+     * The body will be read on first access, it's empty if it has been consumed before.
      *
      * @return An entire list of key-values
+     * @throws ExpressException If the body is larger than the maximum form size of express or cannot be read,
+     *                          the same exception will be thrown by every later call.
      */
     public HashMap<String, String> getFormQuerys() {
+        checkActive();
+        if ((parsed & FORM_QUERIES) == 0) {
+            if (formQueries == null) {
+                formQueries = new HashMap<>();
+            }
+
+            // Check if the request contains x-www-form-urlencoded form data
+            if (!contentType.startsWith("application/x-www-form-urlencoded")) {
+                parsed |= FORM_QUERIES;
+                return formQueries;
+            }
+
+            // The body has been partly read by the failed parse, it must not be parsed again
+            if (bodyError != null) {
+                throw bodyError;
+            }
+
+            long maxSize = express != null ? express.getMaxFormSize() : Long.MAX_VALUE;
+            if (contentLength > maxSize) {
+                throw bodyError = new ExpressException("Form data exceeds the maximum size of " + maxSize + " bytes.");
+            }
+
+            try {
+                RequestUtils.parseForm(body, maxSize, formQueries);
+            } catch (IOException e) {
+
+                // Also thrown if the body exceeds the body limit, a partial form must not be used
+                formQueries.clear();
+                throw bodyError = new ExpressException("Failed to read form data: " + e.getMessage(), e);
+            } catch (ExpressException e) {
+                formQueries.clear();
+                throw bodyError = e;
+            }
+
+            parsed |= FORM_QUERIES;
+        }
+
         return formQueries;
     }
 
@@ -376,6 +793,17 @@ public class Request {
      * @return An entire list of key-values
      */
     public HashMap<String, String> getParams() {
+        checkActive();
+        if (params == null) {
+            params = new HashMap<>();
+
+            if (paramNames != null) {
+                for (int i = 0; i < paramNames.length; i++) {
+                    params.put(paramNames[i], RequestUtils.decode(paramPath.substring(paramBounds[i * 2], paramBounds[i * 2 + 1])));
+                }
+            }
+        }
+
         return params;
     }
 
@@ -385,7 +813,25 @@ public class Request {
      * @param params Request parameter
      */
     public void setParams(HashMap<String, String> params) {
+        checkActive();
         this.params = params;
+        this.paramNames = null;
+    }
+
+    /**
+     * Set the params without decoding them, each value will be decoded
+     * the first time it's requested.
+     *
+     * @param path   The raw path which contains the params.
+     * @param names  The param names.
+     * @param bounds Start and end index in the path for each param.
+     */
+    public void setParams(String path, String[] names, int[] bounds) {
+        checkActive();
+        this.params = null;
+        this.paramPath = path;
+        this.paramNames = names;
+        this.paramBounds = bounds;
     }
 
     /**
@@ -394,6 +840,7 @@ public class Request {
      * @return The corresponding context.
      */
     public String getContext() {
+        checkActive();
         return context;
     }
 
@@ -403,6 +850,7 @@ public class Request {
      * @param context The corresponding context.
      */
     public void setContext(String context) {
+        checkActive();
         this.context = context;
     }
 
@@ -412,9 +860,32 @@ public class Request {
      * @return An entire list of key-values
      */
     public HashMap<String, String> getQuerys() {
+        checkActive();
+        if ((parsed & QUERIES) == 0) {
+            if (queries == null) {
+                queries = new HashMap<>();
+            }
+
+            getQueryIndex().putAll(queries);
+            parsed |= QUERIES;
+        }
+
         return queries;
     }
 
+    private QueryIndex getQueryIndex() {
+        if ((parsed & QUERY_INDEX) == 0) {
+            if (queryIndex == null) {
+                queryIndex = new QueryIndex();
+            }
+
+            queryIndex.parse(uri.getRawQuery());
+            parsed |= QUERY_INDEX;
+        }
+
+        return queryIndex;
+    }
+
     /**
      * Returns an header value.
      *
@@ -422,6 +893,7 @@ public class Request {
      * @return A list with values.
      */
     public List<String> getHeader(String header) {
+        checkActive();
         return Optional.ofNullable(headers.get(header)).orElse(Collections.emptyList());
     }
 
@@ -429,7 +901,17 @@ public class Request {
      * @return The corresponding express object.
      */
     public Express getApp() {
+        checkActive();
         return express;
     }
 
+    /**
+     * Internals of a recycled request which will be reused by the next pooled request of a thread.
+     */
+    private static final class Buffers {
+        private CookieIndex cookieIndex;
+        private QueryIndex queryIndex;
+        private Object[] attributes;
+    }
+
 }
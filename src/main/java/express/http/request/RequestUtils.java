@@ -1,108 +1,168 @@
 package express.http.request;
 
-import com.sun.net.httpserver.Headers;
-import express.http.Cookie;
+import express.ExpressException;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
-import java.util.List;
 
 final class RequestUtils {
 
     private RequestUtils() {}
 
     /**
-     * Extract the cookies from the 'Cookie' header.
+     * Parse an x-www-form-urlencoded body while it's read in fixed-size chunks.
+     * Keys and values are decoded as UTF8 without creating a string of the whole body.
      *
-     * @param headers The Headers
-     * @return An HashMap with the cookie name as key and the complete cookie as value.
+     * @param body    The body.
+     * @param maxSize The maximum amount of bytes which will be read.
+     * @param form    The map to which the decoded key-values are added.
+     * @return The map with the decoded key-values.
+     * @throws IOException      If the body cannot be read.
+     * @throws ExpressException If the body is larger than the maximum size.
      */
-    static HashMap<String, Cookie> parseCookies(Headers headers) {
-        HashMap<String, Cookie> cookieList = new HashMap<>();
-        List<String> headerCookies = headers.get("Cookie");
+    static HashMap<String, String> parseForm(InputStream body, long maxSize, HashMap<String, String> form) throws IOException {
+        ByteArrayOutputStream key = new ByteArrayOutputStream();
+        ByteArrayOutputStream val = new ByteArrayOutputStream();
+        ByteArrayOutputStream target = key;
+        byte[] buffer = new byte[4096];
+        long total = 0;
+
+        // Digits of the current percent escape, -1 if there is none
+        int escape = -1;
+        int high = 0;
+        int n;
+
+        while ((n = body.read(buffer)) != -1) {
+            total += n;
+
+            if (total > maxSize) {
+                throw new ExpressException("Form data exceeds the maximum size of " + maxSize + " bytes.");
+            }
 
-        if (headerCookies == null || headerCookies.isEmpty()) {
-            return cookieList;
+            for (int i = 0; i < n; i++) {
+                int b = buffer[i];
+
+                if (escape != -1) {
+                    int digit = Character.digit(b, 16);
+
+                    if (digit == -1) {
+
+                        // Invalid escape, keep it as it is
+                        target.write('%');
+                        if (escape == 1) {
+                            target.write(high);
+                        }
+
+                        escape = -1;
+                        i--;
+                    } else if (escape == 0) {
+                        high = b;
+                        escape = 1;
+                    } else {
+                        target.write(Character.digit(high, 16) << 4 | digit);
+                        escape = -1;
+                    }
+                } else if (b == '&') {
+                    putFormValue(form, key, val);
+                    target = key;
+                } else if (b == '=' && target == key) {
+                    target = val;
+                } else if (b == '+') {
+                    target.write(' ');
+                } else if (b == '%') {
+                    escape = 0;
+                } else {
+                    target.write(b);
+                }
+            }
         }
 
-        char[] chars = headerCookies.get(0).toCharArray();
-        StringBuilder key = new StringBuilder();
-        StringBuilder val = new StringBuilder();
-        boolean swap = false;
-
-        for (char c : chars) {
-            if (c == '=') {
-                swap = true;
-            } else if (c == ';') {
-                String rkey = key.toString().trim();
-                cookieList.put(rkey, new Cookie(rkey, val.toString()));
-
-                key.setLength(0);
-                val.setLength(0);
-                swap = false;
-            } else if (swap) {
-                val.append(c);
-            } else {
-                key.append(c);
+        // Unfinished escape at the end of the body
+        if (escape != -1) {
+            target.write('%');
+            if (escape == 1) {
+                target.write(high);
             }
         }
 
-        if (key.length() > 0 && val.length() > 0) {
-            String rkey = key.toString().trim();
-            cookieList.put(rkey, new Cookie(rkey, val.toString()));
+        putFormValue(form, key, val);
+        return form;
+    }
+
+    private static void putFormValue(HashMap<String, String> form, ByteArrayOutputStream key, ByteArrayOutputStream val) throws UnsupportedEncodingException {
+        if (key.size() > 0 || val.size() > 0) {
+            form.put(key.toString("UTF-8"), val.toString("UTF-8"));
         }
 
-        return cookieList;
+        key.reset();
+        val.reset();
     }
 
     /**
-     * Method to extract the query's from an url.
+     * Decodes an url-encoded string as UTF8.
      *
-     * @param rawQuery The raw query
-     * @return An list with key-values which are encoded in UTF8.
+     * @param s The encoded string
+     * @return The decoded string, null if the encoding is not supported.
      */
-    static HashMap<String, String> parseRawQuery(String rawQuery) {
-        HashMap<String, String> querys = new HashMap<>();
-
-        // Return empty map on null
-        if (rawQuery == null) {
-            return querys;
+    static String decode(String s) {
+        try {
+            return URLDecoder.decode(s, "UTF8");
+        } catch (UnsupportedEncodingException e) {
+            e.printStackTrace();
         }
 
-        StringBuilder key = new StringBuilder();
-        StringBuilder val = new StringBuilder();
-        char[] chars = rawQuery.toCharArray();
-        boolean keyac = false;
-        char c = '=';
+        return null;
+    }
+
+    /**
+     * Decodes a part of an url-encoded string as UTF8, '+' is decoded as space.
+     * Invalid escapes are kept as they are.
+     *
+     * @param s     The encoded string.
+     * @param start The start index.
+     * @param end   The end index, exclusive.
+     * @return The decoded string.
+     */
+    static String decode(String s, int start, int end) {
 
-        for (char cc : chars) {
-            c = cc;
+        // Chars which aren't escaped take up to three bytes
+        byte[] bytes = new byte[(end - start) * 3];
+        int n = 0;
 
-            if (c == '=') {
-                keyac = true;
-            } else if (c == '&') {
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
 
-                try {
-                    querys.put(URLDecoder.decode(key.toString(), "UTF-8"), URLDecoder.decode(val.toString(), "UTF8"));
-                } catch (UnsupportedEncodingException ignored) {
-                }
+            int high = c == '%' && i + 2 < end ? Character.digit(s.charAt(i + 1), 16) : -1;
+            int low = high != -1 ? Character.digit(s.charAt(i + 2), 16) : -1;
 
-                key.setLength(0);
-                val.setLength(0);
-                keyac = false;
-            } else if (keyac) {
-                val.append(c);
+            if (c == '+') {
+                bytes[n++] = ' ';
+            } else if (low != -1) {
+                bytes[n++] = (byte) (high << 4 | low);
+                i += 2;
+            } else if (c < 0x80) {
+                bytes[n++] = (byte) c;
             } else {
-                key.append(c);
-            }
-        }
 
-        if (c != '=' && c != '&') {
-            querys.put(key.toString(), val.toString());
+                // Encode the run of non-ascii chars at once to keep surrogate pairs together
+                int run = i;
+                while (run < end && s.charAt(run) >= 0x80) {
+                    run++;
+                }
+
+                byte[] encoded = s.substring(i, run).getBytes(StandardCharsets.UTF_8);
+                System.arraycopy(encoded, 0, bytes, n, encoded.length);
+                n += encoded.length;
+                i = run - 1;
+            }
         }
 
-        return querys;
+        return new String(bytes, 0, n, StandardCharsets.UTF_8);
     }
 
 }
@@ -0,0 +1,201 @@
+package express.http.response;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A range of bytes out of a 'Range' request header, start and end are inclusive.
+ */
+final class ByteRange {
+
+    // Requests with more ranges get the whole content
+    private static final int MAX_RANGES = 16;
+
+    final long start;
+    final long end;
+
+    private ByteRange(long start, long end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * @return The amount of bytes.
+     */
+    long length() {
+        return end - start + 1;
+    }
+
+    /**
+     * @param size The size of the whole content.
+     * @return The value for the 'Content-Range' header.
+     */
+    String contentRange(long size) {
+        return "bytes " + start + "-" + end + "/" + size;
+    }
+
+    /**
+     * Returns the ranges which have been requested for a content. The 'Range' header is
+     * only used for GET requests and if the 'If-Range' header matches the 'ETag' or
+     * 'Last-Modified' header of the response.
+     *
+     * @param exchange The exchange.
+     * @param response The response headers.
+     * @param size     The size of the content.
+     * @return The ranges sorted by their start, empty if none can be satisfied, null if the whole content should be sent.
+     */
+    static List<ByteRange> of(HttpExchange exchange, Headers response, long size) {
+        Headers request = exchange.getRequestHeaders();
+        String range = request.getFirst("Range");
+
+        if (range == null || !"GET".equals(exchange.getRequestMethod())) {
+            return null;
+        }
+
+        String ifRange = request.getFirst("If-Range");
+        if (ifRange != null && !matches(ifRange.trim(), response)) {
+            return null;
+        }
+
+        return parse(range, size);
+    }
+
+    /**
+     * Parse a 'Range' header like 'bytes=0-99,200-,-50'. Overlapping and adjacent ranges are merged.
+     *
+     * @param header The header value.
+     * @param size   The size of the content.
+     * @return The ranges sorted by their start, empty if none can be satisfied, null if the header is invalid.
+     */
+    static List<ByteRange> parse(String header, long size) {
+        header = header.trim();
+
+        if (!header.regionMatches(true, 0, "bytes=", 0, 6)) {
+            return null;
+        }
+
+        ArrayList<ByteRange> ranges = new ArrayList<>();
+        int specs = 0;
+
+        for (String spec : header.substring(6).split(",")) {
+            spec = spec.trim();
+
+            // Empty list elements are allowed
+            if (spec.isEmpty()) {
+                continue;
+            }
+
+            if (++specs > MAX_RANGES) {
+                return null;
+            }
+
+            int dash = spec.indexOf('-');
+            if (dash == -1) {
+                return null;
+            }
+
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+
+            if (first.isEmpty()) {
+
+                // Suffix range with the amount of last bytes
+                long suffix = number(last);
+                if (suffix == -1) {
+                    return null;
+                }
+
+                if (suffix > 0 && size > 0) {
+                    ranges.add(new ByteRange(Math.max(0, size - suffix), size - 1));
+                }
+            } else {
+                long start = number(first);
+                long end = last.isEmpty() ? Long.MAX_VALUE : number(last);
+
+                if (start == -1 || end == -1 || end < start) {
+                    return null;
+                }
+
+                if (start < size) {
+                    ranges.add(new ByteRange(start, Math.min(end, size - 1)));
+                }
+            }
+        }
+
+        if (specs == 0) {
+            return null;
+        }
+
+        return merge(ranges);
+    }
+
+    private static List<ByteRange> merge(ArrayList<ByteRange> ranges) {
+        if (ranges.size() < 2) {
+            return ranges;
+        }
+
+        ranges.sort((a, b) -> Long.compare(a.start, b.start));
+        ArrayList<ByteRange> merged = new ArrayList<>(ranges.size());
+        ByteRange current = ranges.get(0);
+
+        for (int i = 1; i < ranges.size(); i++) {
+            ByteRange next = ranges.get(i);
+
+            if (next.start <= current.end + 1) {
+                current = new ByteRange(current.start, Math.max(current.end, next.end));
+            } else {
+                merged.add(current);
+                current = next;
+            }
+        }
+
+        merged.add(current);
+        return merged;
+    }
+
+    /**
+     * Checks if an 'If-Range' value matches the strong 'ETag' or the 'Last-Modified' header of the response.
+     */
+    private static boolean matches(String ifRange, Headers response) {
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            String etag = response.getFirst("ETag");
+            return etag != null && !etag.startsWith("W/") && etag.equals(ifRange);
+        }
+
+        String lastModified = response.getFirst("Last-Modified");
+        if (lastModified == null) {
+            return false;
+        }
+
+        try {
+            Instant a = Instant.from(DateTimeFormatter.RFC_1123_DATE_TIME.parse(ifRange));
+            Instant b = Instant.from(DateTimeFormatter.RFC_1123_DATE_TIME.parse(lastModified));
+            return a.equals(b);
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return The number, -1 if the string contains no valid number.
+     */
+    private static long number(String s) {
+        if (s.isEmpty() || s.length() > 18) {
+            return -1;
+        }
+
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) < '0' || s.charAt(i) > '9') {
+                return -1;
+            }
+        }
+
+        return Long.parseLong(s);
+    }
+}
@@ -9,13 +9,25 @@ import express.utils.Utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * @author Simon Reinisch
@@ -25,21 +37,49 @@ public class Response {
 
     private static final Logger log = LoggerFactory.getLogger(Response.class);
 
-    private final HttpExchange httpExchange;
-    private final OutputStream body;
-    private final Headers headers;
+    // Buffer to copy files and streams into the body, reused by each thread
+    private static final int BUFFER_SIZE = 256 * 1024;
+    private static final ThreadLocal<ByteBuffer> BUFFERS = ThreadLocal.withInitial(() -> ByteBuffer.allocate(BUFFER_SIZE));
+
+    // Encoder of the last charset which has been used by each thread
+    private static final ThreadLocal<CharsetEncoder> ENCODERS = new ThreadLocal<>();
+
+    private HttpExchange httpExchange;
+    private OutputStream body;
+    private Headers headers;
 
     private String contentType = MediaType._txt.getMIME();
+    private Charset charset = StandardCharsets.UTF_8;
     private boolean isClose = false;
+    private boolean isStreaming = false;
     private long contentLength = 0;
     private int status = 200;
 
+    private boolean recycled;
+
     public Response(HttpExchange exchange) {
         this.httpExchange = exchange;
         this.headers = exchange.getResponseHeaders();
         this.body = exchange.getResponseBody();
     }
 
+    /**
+     * Invalidate the response after it has been sent, every following call throws an
+     * IllegalStateException. Called by express if recycling is enabled.
+     */
+    public void recycle() {
+        this.httpExchange = null;
+        this.headers = null;
+        this.body = null;
+        this.recycled = true;
+    }
+
+    private void checkActive() {
+        if (recycled) {
+            throw new IllegalStateException("Response has been recycled, it cannot be used after it has been sent.");
+        }
+    }
+
     /**
      * Add an specific value to the reponse header.
      *
@@ -48,6 +88,7 @@ public class Response {
      * @return This Response instance.
      */
     public Response setHeader(String key, String value) {
+        checkActive();
         headers.add(key, value);
         return this;
     }
@@ -57,6 +98,7 @@ public class Response {
      * @return The values which are associated with this key.
      */
     public List<String> getHeader(String key) {
+        checkActive();
         return headers.get(key);
     }
 
@@ -66,6 +108,7 @@ public class Response {
      * @param location The location.
      */
     public void redirect(String location) {
+        checkActive();
         headers.add("Location", location);
         setStatus(Status._302);
         send();
@@ -87,6 +130,7 @@ public class Response {
      * @return Current response status.
      */
     public int getStatus() {
+        checkActive();
         return this.status;
     }
 
@@ -118,6 +162,7 @@ public class Response {
      * @return The current contentType
      */
     public String getContentType() {
+        checkActive();
         return contentType;
     }
 
@@ -127,6 +172,7 @@ public class Response {
      * @param contentType - The contentType
      */
     public void setContentType(MediaType contentType) {
+        checkActive();
         this.contentType = contentType.getMIME();
     }
 
@@ -136,9 +182,32 @@ public class Response {
      * @param contentType - The contentType
      */
     public void setContentType(String contentType) {
+        checkActive();
         this.contentType = contentType;
     }
 
+    /**
+     * @return The charset which is used to encode strings.
+     */
+    public Charset getCharset() {
+        checkActive();
+        return charset;
+    }
+
+    /**
+     * Set the charset which is used to encode strings, it will be added to a
+     * textual content-type (text/*, json, xml, ...) if it has none. Default is UTF-8.
+     * If the content-type declares a charset, strings are encoded with that one.
+     *
+     * @param charset The charset.
+     * @return This Response instance.
+     */
+    public Response setCharset(Charset charset) {
+        checkActive();
+        this.charset = charset;
+        return this;
+    }
+
     /**
      * Send an empty response (Content-Length = 0)
      */
@@ -155,19 +224,21 @@ public class Response {
      * @param s The string.
      */
     public void send(String s) {
+        checkActive();
         if (s == null) {
             send();
             return;
         }
 
         if (isClosed()) return;
-        byte[] data = s.getBytes();
+        String contentType = withCharset(getContentType());
+        ByteBuffer data = encode(s, encodingOf(contentType));
 
-        this.contentLength = data.length;
-        sendHeaders();
+        this.contentLength = data.remaining();
+        sendHeaders(contentType);
 
         try {
-            this.body.write(s.getBytes());
+            this.body.write(data.array(), data.arrayOffset(), data.remaining());
         } catch (IOException e) {
             log.error("Failed to write char sequence to client.",e );
         }
@@ -197,6 +268,7 @@ public class Response {
     /**
      * Send an entire file as response
      * The mime type will be automatically detected.
+     * Requests with a 'Range' header get only the requested ranges with 206.
      *
      * @param file The file.
      * @return True if the file was successfully send, false if the file doesn't exists or the respose is already closed.
@@ -208,25 +280,17 @@ public class Response {
         }
 
         try {
-            this.contentLength = Files.size(file);
+            long size = Files.size(file);
 
             // Detect content type
             MediaType mediaType = Utils.getContentType(file);
             this.contentType = mediaType == null ? null : mediaType.getMIME();
 
-            // Send header
-            sendHeaders();
-
-            // Send file
-            InputStream fis = Files.newInputStream(file, StandardOpenOption.READ);
-            byte[] buffer = new byte[1024];
-            int n;
-            while ((n = fis.read(buffer)) != -1) {
-                this.body.write(buffer, 0, n);
+            // Send the file or the requested ranges of it
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                sendContent(size, (position, count) -> transfer(channel, position, count));
             }
 
-            fis.close();
-
         } catch (IOException e) {
             log.error("Failed to pipe file to output stream.", e);
             return false;
@@ -274,6 +338,7 @@ public class Response {
     /**
      * Streams an input stream to the client.
      * Requires a contentLength as well as a MediaType
+     * Requests with a 'Range' header get only the requested ranges with 206, if the contentLength is known.
      *
      * @param contentLength Total size
      * @param is            Inputstream
@@ -287,19 +352,31 @@ public class Response {
         }
 
         try {
-            this.contentLength = contentLength;
 
             // Set content type to octet-stream
             this.contentType = mediaType.getMIME();
 
-            // Send header
-            sendHeaders();
-
-            // Write bytes to body
-            byte[] buffer = new byte[4096];
-            int n;
-            while ((n = is.read(buffer)) != -1) {
-                this.body.write(buffer, 0, n);
+            if (contentLength > 0) {
+
+                // Ranges are sorted, the stream only needs to be skipped forward
+                long[] read = {0};
+                sendContent(contentLength, (position, count) -> {
+                    skip(is, position - read[0]);
+                    copy(is, count);
+                    read[0] = position + count;
+                });
+            } else {
+
+                // Send header
+                this.contentLength = contentLength;
+                sendHeaders();
+
+                // Write bytes to body
+                byte[] buffer = BUFFERS.get().array();
+                int n;
+                while ((n = is.read(buffer)) != -1) {
+                    this.body.write(buffer, 0, n);
+                }
             }
 
             is.close();
@@ -313,18 +390,350 @@ public class Response {
         return true;
     }
 
+    /**
+     * Send the headers with chunked transfer encoding and return a stream for the body, the
+     * content length doesn't need to be known. Everything which is written will be sent in
+     * chunks, flush sends what has been buffered so far. The response is complete once the
+     * stream has been closed.
+     *
+     * @return The stream for the body.
+     * @throws IllegalStateException If the response has already been sent.
+     */
+    public OutputStream openStream() {
+        return openStream(getContentType());
+    }
+
+    /**
+     * Same as openStream, but returns a writer which encodes the text with the charset of
+     * the content-type, or of this response if the content-type declares none. The charset
+     * is added to a textual content-type which has none.
+     *
+     * @return The writer for the body.
+     * @throws IllegalStateException If the response has already been sent.
+     */
+    public Writer openWriter() {
+        String contentType = withCharset(getContentType());
+        return new OutputStreamWriter(openStream(contentType), encodingOf(contentType));
+    }
+
+    private OutputStream openStream(String contentType) {
+        if (isClosed()) {
+            throw new IllegalStateException("Response has already been sent.");
+        }
+
+        // A content-length of zero selects chunked transfer encoding
+        this.contentLength = 0;
+        sendHeaders(contentType);
+        this.isStreaming = true;
+        return new BodyStream(body);
+    }
+
+    /**
+     * @return If a stream has been opened and not been closed yet.
+     */
+    public boolean isStreaming() {
+        checkActive();
+        return this.isStreaming;
+    }
+
     /**
      * @return If the response is already closed (headers have been sent).
      */
     public boolean isClosed() {
-        return this.isClose;
+        checkActive();
+        return this.isClose || this.isStreaming;
+    }
+
+    /**
+     * Send the headers and the content. If the request has a 'Range' header only the requested
+     * ranges are sent with 206, multiple ones as multipart/byteranges. Requests whose ranges
+     * cannot be satisfied get 416.
+     *
+     * @param size   The size of the whole content.
+     * @param writer Writes a region of the content to the body, called with ascending positions.
+     * @throws IOException If an IO-Error occurs.
+     */
+    private void sendContent(long size, ContentWriter writer) throws IOException {
+        headers.set("Accept-Ranges", "bytes");
+        List<ByteRange> ranges = ByteRange.of(httpExchange, headers, size);
+
+        if (ranges == null) {
+            this.contentLength = size;
+            sendHeaders();
+            writer.write(0, size);
+        } else if (ranges.isEmpty()) {
+            headers.set("Content-Range", "bytes */" + size);
+            this.status = Status._416.getCode();
+            this.contentLength = -1;
+            sendHeaders();
+        } else if (ranges.size() == 1) {
+            ByteRange range = ranges.get(0);
+            headers.set("Content-Range", range.contentRange(size));
+            this.status = Status._206.getCode();
+            this.contentLength = range.length();
+            sendHeaders();
+            writer.write(range.start, range.length());
+        } else {
+            String boundary = Long.toHexString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE);
+            String type = getContentType() == null ? "" : "Content-Type: " + getContentType() + "\r\n";
+            byte[][] heads = new byte[ranges.size()][];
+            byte[] tail = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.ISO_8859_1);
+            long length = tail.length;
+
+            // The length of the whole body has to be known up front
+            for (int i = 0; i < heads.length; i++) {
+                ByteRange range = ranges.get(i);
+                heads[i] = ("\r\n--" + boundary + "\r\n" + type + "Content-Range: " + range.contentRange(size) + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1);
+                length += heads[i].length + range.length();
+            }
+
+            this.status = Status._206.getCode();
+            this.contentLength = length;
+            sendHeaders("multipart/byteranges; boundary=" + boundary);
+
+            for (int i = 0; i < heads.length; i++) {
+                this.body.write(heads[i]);
+                writer.write(ranges.get(i).start, ranges.get(i).length());
+            }
+
+            this.body.write(tail);
+        }
+    }
+
+    /**
+     * Skip bytes of a stream.
+     */
+    private static void skip(InputStream is, long count) throws IOException {
+        while (count > 0) {
+            long n = is.skip(count);
+
+            // Skip may return zero before the end, read a single byte to find out
+            if (n <= 0) {
+                if (is.read() == -1) {
+                    throw new EOFException("Stream is shorter than expected.");
+                }
+
+                n = 1;
+            }
+
+            count -= n;
+        }
+    }
+
+    /**
+     * Copy a certain amount of bytes out of a stream to the body.
+     */
+    private void copy(InputStream is, long count) throws IOException {
+        byte[] buffer = BUFFERS.get().array();
+
+        while (count > 0) {
+            int n = is.read(buffer, 0, (int) Math.min(buffer.length, count));
+            if (n == -1) {
+                throw new EOFException("Stream is shorter than expected.");
+            }
+
+            this.body.write(buffer, 0, n);
+            count -= n;
+        }
+    }
+
+    /**
+     * Copy a region of a file to the body. With sendfile if the body is a channel, the
+     * exchange of the JDK server only provides a stream which gets the file in large
+     * chunks out of a buffer which is reused by each thread.
+     *
+     * @param channel  The file.
+     * @param position The position of the first byte.
+     * @param count    The amount of bytes.
+     * @throws IOException If an IO-Error occurs.
+     */
+    private void transfer(FileChannel channel, long position, long count) throws IOException {
+        long end = position + count;
+
+        if (body instanceof WritableByteChannel) {
+            WritableByteChannel target = (WritableByteChannel) body;
+
+            while (position < end) {
+                long n = channel.transferTo(position, end - position, target);
+
+                if (n <= 0 && position >= channel.size()) {
+                    throw new EOFException("File is shorter than expected.");
+                }
+
+                position += n;
+            }
+
+            return;
+        }
+
+        ByteBuffer buffer = BUFFERS.get();
+        while (position < end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - position));
+
+            int n = channel.read(buffer, position);
+            if (n == -1) {
+                throw new EOFException("File is shorter than expected.");
+            }
+
+            this.body.write(buffer.array(), 0, n);
+            position += n;
+        }
+    }
+
+    /**
+     * Encode a string once. The encoder and the buffer are reused by each thread,
+     * a larger buffer is only allocated if the string doesn't fit.
+     *
+     * @param s       The string.
+     * @param charset The charset.
+     * @return The buffer which contains the bytes from its position to its limit.
+     */
+    private static ByteBuffer encode(String s, Charset charset) {
+        CharsetEncoder encoder = ENCODERS.get();
+
+        if (encoder == null || !encoder.charset().equals(charset)) {
+            encoder = charset.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            ENCODERS.set(encoder);
+        }
+
+        ByteBuffer out = BUFFERS.get();
+        long estimate = (long) (s.length() * (double) encoder.averageBytesPerChar()) + 16;
+        if (estimate > out.capacity()) {
+            out = ByteBuffer.allocate((int) Math.min(estimate, Integer.MAX_VALUE - 8));
+        }
+
+        CharBuffer in = CharBuffer.wrap(s);
+        encoder.reset();
+        out.clear();
+
+        while (encoder.encode(in, out, true).isOverflow()) {
+            out = grow(out);
+        }
+
+        while (encoder.flush(out).isOverflow()) {
+            out = grow(out);
+        }
+
+        out.flip();
+        return out;
+    }
+
+    /**
+     * Copy the content of a buffer into one with twice the capacity, the pooled buffer stays untouched.
+     */
+    private static ByteBuffer grow(ByteBuffer buffer) {
+        ByteBuffer larger = ByteBuffer.allocate((int) Math.min(buffer.capacity() * 2L, Integer.MAX_VALUE - 8));
+        buffer.flip();
+        return larger.put(buffer);
+    }
+
+    /**
+     * Add the charset of this response to a textual content-type which has none.
+     * A charset parameter which names an unknown charset is replaced.
+     */
+    private String withCharset(String contentType) {
+        int param = contentType != null ? charsetParam(contentType) : -1;
+
+        if (param != -1) {
+            if (declaredCharset(contentType, param) != null) {
+                return contentType;
+            }
+
+            int end = contentType.indexOf(';', param);
+            return contentType.substring(0, param) + "charset=" + charset.name().toLowerCase() + (end == -1 ? "" : contentType.substring(end));
+        } else if (contentType == null || !isTextual(contentType)) {
+            return contentType;
+        }
+
+        return contentType + "; charset=" + charset.name().toLowerCase();
+    }
+
+    /**
+     * Returns the charset which strings are encoded with for a content-type, the one of
+     * the content-type if it declares one, otherwise the charset of this response.
+     */
+    private Charset encodingOf(String contentType) {
+        int param = contentType != null ? charsetParam(contentType) : -1;
+        Charset declared = param != -1 ? declaredCharset(contentType, param) : null;
+        return declared != null ? declared : charset;
+    }
+
+    /**
+     * Returns the index of the charset parameter of a content-type, -1 if it has none.
+     */
+    private static int charsetParam(String contentType) {
+        int i = contentType.indexOf(';');
+
+        while (i != -1) {
+            int start = i + 1;
+            while (start < contentType.length() && contentType.charAt(start) == ' ') {
+                start++;
+            }
+
+            if (contentType.regionMatches(true, start, "charset=", 0, 8)) {
+                return start;
+            }
+
+            i = contentType.indexOf(';', start);
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the charset which is named by the charset parameter at an index, null if it's unknown.
+     */
+    private static Charset declaredCharset(String contentType, int param) {
+        int end = contentType.indexOf(';', param);
+        String name = contentType.substring(param + 8, end == -1 ? contentType.length() : end).trim();
+
+        if (name.length() > 1 && name.charAt(0) == '"' && name.charAt(name.length() - 1) == '"') {
+            name = name.substring(1, name.length() - 1);
+        }
+
+        try {
+            return Charset.forName(name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Check if a content-type is text/* or a known textual application type, like json or xml.
+     */
+    private static boolean isTextual(String contentType) {
+        int end = contentType.indexOf(';');
+        String type = (end < 0 ? contentType : contentType.substring(0, end)).trim().toLowerCase();
+
+        if (type.startsWith("text/") || type.endsWith("+json") || type.endsWith("+xml")) {
+            return true;
+        }
+
+        switch (type) {
+            case "application/json":
+            case "application/xml":
+            case "application/javascript":
+            case "application/ecmascript":
+            case "application/x-javascript":
+            case "application/x-www-form-urlencoded":
+                return true;
+            default:
+                return false;
+        }
     }
 
     private void sendHeaders() {
+        sendHeaders(getContentType());
+    }
+
+    private void sendHeaders(String contentType) {
         try {
 
             // Fallback
-            String contentType = getContentType() == null ? MediaType._bin.getExtension() : getContentType();
+            contentType = contentType == null ? MediaType._bin.getExtension() : contentType;
 
             // Set header and send response
             this.headers.set("Content-Type", contentType);
@@ -343,4 +752,62 @@ public class Response {
         }
     }
 
+    /**
+     * Writes a region of a content to the body.
+     */
+    private interface ContentWriter {
+        void write(long position, long count) throws IOException;
+    }
+
+    /**
+     * Stream of a chunked body, closing it completes the response.
+     */
+    private final class BodyStream extends OutputStream {
+        private final OutputStream out;
+        private boolean closed;
+
+        BodyStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            ensureOpen();
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ensureOpen();
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            ensureOpen();
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+
+            closed = true;
+            try {
+                out.close();
+            } finally {
+                isStreaming = false;
+                isClose = true;
+            }
+        }
+
+        private void ensureOpen() throws IOException {
+            if (closed) {
+                throw new IOException("Stream has been closed.");
+            }
+        }
+    }
+
 }
@@ -0,0 +1,66 @@
+package express.middleware;
+
+import express.http.HttpRequestHandler;
+import express.http.request.Request;
+import express.http.response.Response;
+import express.utils.Status;
+
+/**
+ * Middleware which rejects requests whose Content-Length is larger than
+ * the limit with 413, before anything reads the body. Bodies without a
+ * Content-Length fail once more than the limit has been read. Can be added
+ * for specific routes to lower the limit which has been set for express.
+ */
+public class BodyLimit implements HttpRequestHandler {
+
+    private final long maxSize;
+
+    /**
+     * @param maxSize The maximum body size in bytes.
+     */
+    public BodyLimit(long maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Body size cannot be negative: " + maxSize);
+        }
+
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public void handle(Request req, Response res) {
+        reject(req, res, maxSize);
+    }
+
+    /**
+     * Rejects the request with 413 if its Content-Length is larger than the limit.
+     * The connection will be closed afterwards, so the body will not be read.
+     * If the request has no Content-Length, like a chunked body, the body is
+     * limited instead and reading more than the limit fails with an IOException.
+     *
+     * @param req     The request.
+     * @param res     The response.
+     * @param maxSize The maximum body size in bytes.
+     * @return True if the request has been rejected.
+     */
+    public static boolean reject(Request req, Response res, long maxSize) {
+        long contentLength = req.getContentLength();
+
+        if (contentLength < 0) {
+            req.limitBody(maxSize);
+            return false;
+        } else if (contentLength <= maxSize) {
+            return false;
+        }
+
+        res.setHeader("Connection", "close");
+        res.sendStatus(Status._413);
+        return true;
+    }
+
+    /**
+     * @return The maximum body size in bytes.
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+}
@@ -17,8 +17,6 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 final class CookieSession implements HttpRequestHandler, Filter, FilterTask {
 
-    private final static String MIDDLEWARE_NAME = "sessioncookie";
-
     private final ConcurrentHashMap<String, SessionCookie> cookies = new ConcurrentHashMap<>();
     private final String cookieName;
     private final long maxAge;
@@ -34,7 +32,7 @@ final class CookieSession implements HttpRequestHandler, Filter, FilterTask {
         Cookie cookie = req.getCookie(cookieName);
 
         if (cookie != null && cookies.containsKey(cookie.getValue())) {
-            req.addMiddlewareContent(this, cookies.get(cookie.getValue()));
+            req.setAttribute(Middleware.SESSION_COOKIE, cookies.get(cookie.getValue()));
         } else {
             String token;
 
@@ -48,13 +46,13 @@ final class CookieSession implements HttpRequestHandler, Filter, FilterTask {
             SessionCookie sessionCookie = new SessionCookie(maxAge);
             cookies.put(token, sessionCookie);
 
-            req.addMiddlewareContent(this, sessionCookie);
+            req.setAttribute(Middleware.SESSION_COOKIE, sessionCookie);
         }
     }
 
     @Override
     public String getName() {
-        return MIDDLEWARE_NAME;
+        return Middleware.SESSION_COOKIE.getName();
     }
 
     @Override
@@ -1,5 +1,8 @@
 package express.middleware;
 
+import express.http.SessionCookie;
+import express.http.request.AttributeKey;
+
 import java.io.IOException;
 
 /**
@@ -8,12 +11,17 @@ import java.io.IOException;
  */
 public final class Middleware {
 
+    /**
+     * The session of the cookie-session middleware, also available as middleware content 'sessioncookie'.
+     */
+    public static final AttributeKey<SessionCookie> SESSION_COOKIE = AttributeKey.create("sessioncookie", SessionCookie.class);
+
     // Don't allow instantiating this class
     private Middleware() {}
 
     /**
      * Create an new cookie-session middleware.
-     * You can access and edit to session-cookie data via request.getMiddlewareContent('SessionCookie').
+     * You can access and edit to session-cookie data via request.getAttribute(Middleware.SESSION_COOKIE).
      *
      * @param cookieName An name for the session-cookie, it's recommend to use NOT SID for security reasons
      * @param maxAge     An max-age for the cookie
@@ -48,6 +56,16 @@ public final class Middleware {
         return new FileProvider(directoryPath, staticOptions);
     }
 
+    /**
+     * Rejects requests with a larger Content-Length with 413 before the body is read.
+     *
+     * @param maxSize The maximum body size in bytes.
+     * @return A fresh BodyLimit
+     */
+    public static BodyLimit bodyLimit(long maxSize) {
+        return new BodyLimit(maxSize);
+    }
+
     /**
      * CORS Middleware
      *
@@ -0,0 +1,131 @@
+package express;
+
+import express.filter.FilterTask;
+import express.http.HttpRequestHandler;
+import express.http.request.Request;
+import express.http.response.Response;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ExpressTest {
+
+    private final Express app = new Express();
+    private final List<String> events = new CopyOnWriteArrayList<>();
+    private int port;
+
+    @Before
+    public void findPort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+    }
+
+    @After
+    public void stop() {
+        app.stop();
+    }
+
+    private void listen() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        app.listen(started::countDown, port);
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+    }
+
+    private String get(String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + path).openConnection();
+        connection.setReadTimeout(5000);
+
+        try (InputStream in = connection.getInputStream()) {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int n;
+
+            while ((n = in.read(buffer)) != -1) {
+                body.write(buffer, 0, n);
+            }
+
+            return connection.getResponseCode() + ":" + new String(body.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private Task task(String name) {
+        return new Task(name, events);
+    }
+
+    @Test
+    public void replaceRoutesAndWorker() throws Exception {
+        app.use(task("old"));
+        app.use(task("other"));
+        app.get("/a", (req, res) -> res.send("old a"));
+        listen();
+
+        assertEquals("200:old a", get("/a"));
+        assertEquals(Arrays.asList("start old", "start other"), events);
+
+        ExpressRouter router = new ExpressRouter();
+        router.use(task("new"));
+        router.get("/a", (req, res) -> res.send("new a"));
+        router.get("/b", (req, res) -> res.send("b"));
+        app.replace(router);
+
+        assertEquals("200:new a", get("/a"));
+        assertEquals("200:b", get("/b"));
+
+        // The new worker is started before the old ones are stopped
+        assertEquals(Arrays.asList("start old", "start other", "start new", "stop old", "stop other"), events);
+
+        app.stop();
+        assertEquals("stop new", events.get(events.size() - 1));
+    }
+
+    // Middleware with a worker which records when it's started and stopped
+    private static final class Task implements FilterTask, HttpRequestHandler {
+        private final String name;
+        private final List<String> events;
+
+        Task(String name, List<String> events) {
+            this.name = name;
+            this.events = events;
+        }
+
+        @Override
+        public long getDelay() {
+            return 60000;
+        }
+
+        @Override
+        public void onUpdate() {
+        }
+
+        @Override
+        public void handle(Request req, Response res) {
+        }
+
+        @Override
+        public void onStart() {
+            events.add("start " + name);
+        }
+
+        @Override
+        public void onStop() {
+            events.add("stop " + name);
+        }
+    }
+}
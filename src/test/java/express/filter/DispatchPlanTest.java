@@ -0,0 +1,85 @@
+package express.filter;
+
+import express.Express;
+import express.http.HttpRequestHandler;
+import express.http.TestExchange;
+import express.utils.Status;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class DispatchPlanTest {
+
+    private final Express app = new Express();
+    private final FilterLayerHandler handler = new FilterLayerHandler(2);
+    private final List<String> events = new ArrayList<>();
+
+    private void middleware(String method, String context, String name) {
+        handler.add(0, new FilterImpl(method, context, (req, res) -> events.add(name + req.getParams())));
+    }
+
+    private void route(String method, String context) {
+        handler.add(1, new FilterImpl(method, context, (req, res) -> res.send(String.join(" ", events) + " -> " + req.getParams())));
+    }
+
+    private String send(String method, String path) {
+        events.clear();
+        TestExchange exchange = new TestExchange(method, path);
+        handler.handle(exchange, app);
+        return exchange.getResponse();
+    }
+
+    @Test
+    public void exactLinkUsesRouteParams() {
+        middleware("*", "/users/:name", "all");
+        middleware("GET", "/users/:name", "get");
+        middleware("POST", "/users/:name", "post");
+        route("GET", "/users/:id");
+
+        assertEquals("200:all{name=7} get{name=7} -> {id=7}", send("GET", "/users/7"));
+        assertEquals("200:all{name=7} get{name=7} -> {id=7}", send("GET", "/users/7/"));
+    }
+
+    @Test
+    public void checkedLinkMatchesRequest() {
+        middleware("*", "/users/me", "me");
+        middleware("*", "/users/:name/posts", "posts");
+        middleware("GET", "*", "get");
+        route("*", "/users/:id");
+
+        assertEquals("200:me{} get{} -> {id=me}", send("GET", "/users/me"));
+        assertEquals("200:get{} -> {id=7}", send("GET", "/users/7"));
+        assertEquals("200: -> {id=7}", send("POST", "/users/7"));
+    }
+
+    @Test
+    public void unrelatedMiddlewareIsNotFired() {
+        middleware("*", "/articles/:id", "articles");
+        middleware("*", "/users/me", "me");
+        route("GET", "/users/:id/posts");
+
+        assertEquals("200: -> {id=me}", send("GET", "/users/me/posts"));
+    }
+
+    @Test
+    public void closedResponseStopsChain() {
+        handler.add(0, new FilterImpl("*", "/admin/:page", (req, res) -> res.sendStatus(Status._403)));
+        route("GET", "/admin/:page");
+
+        assertEquals("403:", send("GET", "/admin/users"));
+    }
+
+    @Test
+    public void middlewareWithoutRoute() {
+        middleware("*", "*", "all");
+        HttpRequestHandler fallback = (req, res) -> res.send(String.join(" ", events) + " fallback");
+        handler.add(0, new FilterImpl("*", "/missing", fallback));
+
+        assertEquals("200:all{} fallback", send("GET", "/missing"));
+        assertNull(send("GET", "/other"));
+    }
+}
@@ -0,0 +1,60 @@
+package express.filter;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FilterImplTest {
+
+    private static boolean matches(String context, String url) {
+        return FilterImpl.matchURL(context, url, null, false);
+    }
+
+    private static int[] bounds(String context, String url, int params) {
+        int[] bounds = new int[params * 2];
+        assertTrue(FilterImpl.matchURL(context, url, bounds, false));
+        return bounds;
+    }
+
+    @Test
+    public void staticContext() {
+        assertTrue(matches("/users/me", "/users/me"));
+        assertFalse(matches("/users/me", "/users/me/"));
+        assertFalse(matches("/users/me", "/users/m"));
+    }
+
+    @Test
+    public void paramBounds() {
+        assertArrayEquals(new int[]{7, 9, 16, 17}, bounds("/users/:id/posts/:post", "/users/42/posts/7", 2));
+        assertFalse(matches("/users/:id/posts/:post", "/users/42/posts"));
+    }
+
+    @Test
+    public void trailingSlashAfterParam() {
+        assertArrayEquals(new int[]{7, 9}, bounds("/users/:id", "/users/42/", 1));
+        assertFalse(matches("/users/:id", "/users/42//"));
+    }
+
+    @Test
+    public void optionalSlashAfterParam() {
+        assertArrayEquals(new int[]{7, 8}, bounds("/users/:id/", "/users/7", 1));
+        assertArrayEquals(new int[]{3, 4}, bounds("/u/:id/", "/u/5/", 1));
+        assertFalse(matches("/users/:id/", "/users/"));
+        assertFalse(matches("/users/:id/x/", "/users/7/x"));
+    }
+
+    @Test
+    public void emptyParam() {
+        assertArrayEquals(new int[]{7, 7}, bounds("/users/:id/posts", "/users//posts", 1));
+        assertFalse(matches("/users/:id", "/users/"));
+        assertFalse(matches("/users/:id", "/users"));
+    }
+
+    @Test
+    public void prefix() {
+        assertTrue(FilterImpl.matchURL("/api/", "/api/x/y", null, true));
+        assertFalse(FilterImpl.matchURL("/api/", "/apix", null, true));
+    }
+}
@@ -0,0 +1,124 @@
+package express.filter;
+
+import express.Express;
+import express.ExpressException;
+import express.http.TestExchange;
+import express.http.request.Request;
+import express.http.response.Response;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class FilterLayerHandlerTest {
+
+    private final Express app = new Express();
+    private final FilterLayerHandler handler = new FilterLayerHandler(2);
+
+    private static void route(FilterLayerHandler handler, String context, String body) {
+        handler.add(1, new FilterImpl("GET", context, (req, res) -> res.send(body + " " + req.getParams())));
+    }
+
+    private String send(String path) {
+        TestExchange exchange = new TestExchange("GET", path);
+        handler.handle(exchange, app);
+        return exchange.getResponse();
+    }
+
+    @Test
+    public void mountedRoutes() {
+        FilterLayerHandler router = new FilterLayerHandler(2);
+        route(router, "/", "root");
+        route(router, "/:id", "id");
+        handler.mount("/users", router);
+
+        assertEquals("200:root {}", send("/users/"));
+        assertEquals("200:id {id=7}", send("/users/7"));
+        assertNull(send("/7"));
+    }
+
+    @Test
+    public void routesAddedAfterMounting() {
+        FilterLayerHandler router = new FilterLayerHandler(2);
+        FilterLayerHandler nested = new FilterLayerHandler(2);
+        router.mount("/posts", nested);
+        handler.mount("/users/:user", router);
+        handler.freeze();
+
+        assertNull(send("/users/1/posts/2"));
+
+        // Changes of a mounted handler recompile every parent
+        route(nested, "/:post", "post");
+        assertEquals("200:post {post=2, user=1}", send("/users/1/posts/2"));
+
+        route(router, "/", "user");
+        assertEquals("200:user {user=1}", send("/users/1"));
+    }
+
+    @Test
+    public void mountedTwice() {
+        FilterLayerHandler router = new FilterLayerHandler(2);
+        route(router, "/x", "x");
+        handler.mount("/a", router);
+        handler.mount("/b", router);
+
+        assertEquals("200:x {}", send("/a/x"));
+        assertEquals("200:x {}", send("/b/x"));
+    }
+
+    @Test
+    public void routerMiddlewareIsGlobal() {
+        FilterLayerHandler router = new FilterLayerHandler(2);
+        router.add(0, new FilterImpl("*", "*", (req, res) -> res.send("middleware")));
+        route(router, "/x", "x");
+        handler.mount("/a", router);
+        route(handler, "/other", "other");
+
+        assertEquals("200:middleware", send("/other"));
+    }
+
+    @Test
+    public void cyclicMount() {
+        FilterLayerHandler router = new FilterLayerHandler(2);
+        handler.mount("/a", router);
+
+        assertThrows(ExpressException.class, () -> router.mount("/b", handler));
+        assertThrows(ExpressException.class, () -> handler.mount("/c", handler));
+    }
+
+    @Test
+    public void recycledAfterResponse() {
+        Request[] kept = new Request[1];
+        Response[] streaming = new Response[1];
+        handler.add(1, new FilterImpl("GET", "/kept", (req, res) -> {
+            kept[0] = req;
+            res.send("kept");
+        }));
+        handler.add(1, new FilterImpl("GET", "/stream", (req, res) -> {
+            streaming[0] = res;
+            res.openStream();
+        }));
+        app.setRecycling(true);
+
+        assertEquals("200:kept", send("/kept"));
+        assertThrows(IllegalStateException.class, () -> kept[0].getPath());
+
+        // A streaming response may still be written after the handler returned
+        send("/stream");
+        assertTrue(streaming[0].isStreaming());
+    }
+
+    @Test
+    public void notRecycledByDefault() {
+        Request[] kept = new Request[1];
+        handler.add(1, new FilterImpl("GET", "/kept", (req, res) -> {
+            kept[0] = req;
+            res.send("kept");
+        }));
+
+        send("/kept");
+        assertEquals("/kept", kept[0].getPath());
+    }
+}
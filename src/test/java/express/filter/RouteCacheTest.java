@@ -0,0 +1,85 @@
+package express.filter;
+
+import express.Express;
+import express.http.TestExchange;
+import express.http.request.AttributeKey;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+public class RouteCacheTest {
+
+    private static final AttributeKey<String> NAME = AttributeKey.create("name", String.class);
+
+    private final Express app = new Express();
+    private final FilterLayerHandler handler = new FilterLayerHandler(2);
+    private final RouteCache cache = new RouteCache(2);
+
+    @Before
+    public void setup() {
+        handler.add(0, new FilterImpl("GET", "/users/:name", (req, res) -> req.setAttribute(NAME, req.getParam("name"))));
+        handler.add(1, new FilterImpl("GET", "/users/:id", (req, res) -> res.send(req.getAttribute(NAME) + " " + req.getParam("id"))));
+        handler.setCache(cache);
+    }
+
+    private String send(String method, String path) {
+        TestExchange exchange = new TestExchange(method, path);
+        handler.handle(exchange, app);
+        return exchange.getResponse();
+    }
+
+    @Test
+    public void hitsKeepTheirParams() {
+        assertEquals("200:1 1", send("GET", "/users/1"));
+        assertEquals("200:2 2", send("GET", "/users/2"));
+        assertEquals("200:1 1", send("GET", "/users/1"));
+
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void oldestEntryIsEvicted() {
+        send("GET", "/users/1");
+        send("GET", "/users/2");
+        send("GET", "/users/3");
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+
+        // The first path has been evicted, the last one is still cached
+        send("GET", "/users/1");
+        send("GET", "/users/3");
+        assertEquals(1, cache.getHits());
+        assertEquals(4, cache.getMisses());
+    }
+
+    @Test
+    public void methodsAreCachedSeparately() {
+        send("GET", "/users/1");
+        send("HEAD", "/users/1");
+
+        assertEquals(0, cache.getHits());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void newRoutesInvalidateCache() {
+        send("GET", "/users/me");
+        assertEquals(1, cache.size());
+
+        handler.add(1, new FilterImpl("GET", "/users/me", (req, res) -> {}));
+        assertEquals(0, cache.size());
+
+        send("GET", "/users/me");
+        assertEquals(0, cache.getHits());
+    }
+
+    @Test
+    public void invalidSize() {
+        assertThrows(IllegalArgumentException.class, () -> new RouteCache(0));
+    }
+}
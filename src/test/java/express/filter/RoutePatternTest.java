@@ -0,0 +1,82 @@
+package express.filter;
+
+import express.ExpressException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class RoutePatternTest {
+
+    @Test
+    public void isPattern() {
+        assertTrue(RoutePattern.isPattern("/img/*.png"));
+        assertTrue(RoutePattern.isPattern("/faq?"));
+        assertTrue(RoutePattern.isPattern("/{a|b}"));
+        assertFalse(RoutePattern.isPattern("*"));
+        assertFalse(RoutePattern.isPattern("/users/:id"));
+    }
+
+    @Test
+    public void singleCharacter() {
+        RoutePattern pattern = RoutePattern.compile("/v?/x");
+
+        assertTrue(pattern.matches("/v1/x"));
+        assertFalse(pattern.matches("/v/x"));
+        assertFalse(pattern.matches("/v12/x"));
+        assertFalse(pattern.matches("/v//x"));
+    }
+
+    @Test
+    public void segmentWildcard() {
+        RoutePattern pattern = RoutePattern.compile("/img/*.png");
+
+        assertTrue(pattern.matches("/img/a.png"));
+        assertTrue(pattern.matches("/img/.png"));
+        assertFalse(pattern.matches("/img/a/b.png"));
+        assertFalse(pattern.matches("/img/a.jpg"));
+    }
+
+    @Test
+    public void anyWildcard() {
+        RoutePattern pattern = RoutePattern.compile("/static/**");
+
+        assertTrue(pattern.matches("/static/"));
+        assertTrue(pattern.matches("/static/a/b/c.css"));
+        assertFalse(pattern.matches("/static"));
+    }
+
+    @Test
+    public void alternatives() {
+        RoutePattern pattern = RoutePattern.compile("/img/*.{jpg|jpeg}");
+
+        assertTrue(pattern.matches("/img/a.jpg"));
+        assertTrue(pattern.matches("/img/a.jpeg"));
+        assertFalse(pattern.matches("/img/a.jpe"));
+    }
+
+    @Test
+    public void unicodePath() {
+        RoutePattern pattern = RoutePattern.compile("/\u00e4/*");
+
+        assertTrue(pattern.matches("/\u00e4/x"));
+        assertFalse(pattern.matches("/\u00f6/x"));
+    }
+
+    @Test
+    public void multiplePatterns() {
+        RoutePattern pattern = RoutePattern.compile(new String[]{"/a/*", "/a/b", "/**"});
+
+        assertArrayEquals(new int[]{0, 1, 2}, pattern.match("/a/b"));
+        assertArrayEquals(new int[]{0, 2}, pattern.match("/a/c"));
+        assertArrayEquals(new int[]{2}, pattern.match("/b"));
+    }
+
+    @Test
+    public void invalidPatterns() {
+        assertThrows(ExpressException.class, () -> RoutePattern.compile("/{a|b"));
+        assertThrows(ExpressException.class, () -> RoutePattern.compile("/:id/*"));
+    }
+}
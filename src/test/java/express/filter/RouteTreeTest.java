@@ -0,0 +1,151 @@
+package express.filter;
+
+import express.http.HttpRequestHandler;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class RouteTreeTest {
+
+    private static final HttpRequestHandler HANDLER = (req, res) -> {};
+
+    private final RouteTree tree = new RouteTree();
+    private int order;
+
+    private RouteTree.Entry route(String context) {
+        RouteTree.Entry entry = new RouteTree.Entry(HANDLER, order++, context, false);
+        tree.insert(entry);
+        return entry;
+    }
+
+    private RouteTree.Entry catchAll(String root) {
+        RouteTree.Entry entry = new RouteTree.Entry(HANDLER, order++, root, true);
+        tree.insert(entry);
+        return entry;
+    }
+
+    private RouteTree.Matches lookup(String path) {
+        tree.seal();
+        RouteTree.Matches matches = new RouteTree.Matches();
+        tree.lookup(path, matches);
+        return matches;
+    }
+
+    @Test
+    public void staticRoute() {
+        route("/users/me");
+
+        assertEquals(1, lookup("/users/me").size());
+        assertEquals(0, lookup("/users/m").size());
+        assertEquals(0, lookup("/users/me/x").size());
+        assertEquals(0, lookup("/users/me/").size());
+    }
+
+    @Test
+    public void paramBounds() {
+        route("/users/:id/posts/:post");
+
+        RouteTree.Matches matches = lookup("/users/42/posts/7");
+        assertEquals(1, matches.size());
+        assertArrayEquals(new int[]{7, 9, 16, 17}, matches.bounds(0));
+    }
+
+    @Test
+    public void trailingSlashAfterParam() {
+        route("/users/:id");
+
+        RouteTree.Matches matches = lookup("/users/42/");
+        assertEquals(1, matches.size());
+        assertArrayEquals(new int[]{7, 9}, matches.bounds(0));
+        assertEquals(0, lookup("/users/42//").size());
+        assertEquals(0, lookup("/users/42/x").size());
+    }
+
+    @Test
+    public void optionalSlashAfterParam() {
+        route("/users/:id/");
+        route("/users/:id/posts");
+
+        RouteTree.Matches matches = lookup("/users/7");
+        assertEquals(1, matches.size());
+        assertArrayEquals(new int[]{7, 8}, matches.bounds(0));
+        assertEquals(1, lookup("/users/7/").size());
+        assertEquals(0, lookup("/users/").size());
+    }
+
+    @Test
+    public void mountedRootRoute() {
+
+        // router.get("/") mounted with app.use("/u/:id", router)
+        RouteTree.Entry root = route("/u/:id/");
+        route("/u/:id/x");
+
+        RouteTree.Matches matches = lookup("/u/5");
+        assertEquals(1, matches.size());
+        assertSame(root, matches.entry(0));
+        assertArrayEquals(new int[]{3, 4}, matches.bounds(0));
+        assertEquals(1, lookup("/u/5/").size());
+        assertEquals(1, lookup("/u/5/x").size());
+    }
+
+    @Test
+    public void emptyParam() {
+        route("/users/:id");
+        route("/users/:id/posts");
+
+        assertEquals(0, lookup("/users/").size());
+        assertEquals(0, lookup("/users").size());
+
+        RouteTree.Matches matches = lookup("/users//posts");
+        assertEquals(1, matches.size());
+        assertArrayEquals(new int[]{7, 7}, matches.bounds(0));
+    }
+
+    @Test
+    public void encodedSlashStaysInParam() {
+        route("/files/:name");
+
+        RouteTree.Matches matches = lookup("/files/a%2Fb");
+        assertEquals(1, matches.size());
+        assertArrayEquals(new int[]{7, 12}, matches.bounds(0));
+    }
+
+    @Test
+    public void registrationOrder() {
+        RouteTree.Entry param = route("/users/:id");
+        RouteTree.Entry fixed = route("/users/me");
+        RouteTree.Entry all = catchAll("");
+
+        RouteTree.Matches matches = lookup("/users/me");
+        assertEquals(3, matches.size());
+        assertSame(param, matches.entry(0));
+        assertSame(fixed, matches.entry(1));
+        assertSame(all, matches.entry(2));
+    }
+
+    @Test
+    public void catchAllBelowRoot() {
+        catchAll("/api/");
+
+        assertEquals(1, lookup("/api/x").size());
+        assertEquals(1, lookup("/api/x/y").size());
+        assertEquals(0, lookup("/apix").size());
+        assertEquals(0, lookup("/other").size());
+    }
+
+    @Test
+    public void patternRoutes() {
+        RouteTree.Entry png = route("/img/*.png");
+        RouteTree.Entry any = route("/img/**");
+
+        RouteTree.Matches matches = lookup("/img/a.png");
+        assertEquals(2, matches.size());
+        assertSame(png, matches.entry(0));
+        assertSame(any, matches.entry(1));
+
+        assertEquals(1, lookup("/img/a/b.png").size());
+        assertEquals(0, lookup("/css/a.png").size());
+    }
+}
@@ -0,0 +1,175 @@
+package express.http;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+
+/**
+ * Exchange without a server, the response is written into a byte array.
+ */
+public class TestExchange extends HttpExchange {
+
+    private final Headers requestHeaders = new Headers();
+    private final Headers responseHeaders = new Headers();
+    private final HashMap<String, Object> attributes = new HashMap<>();
+    private final String method;
+    private final URI uri;
+    private InputStream requestBody;
+    private OutputStream responseBody = new ByteArrayOutputStream();
+    private int responseCode = -1;
+    private long responseLength;
+
+    public TestExchange(String method, String uri) {
+        this.method = method;
+        this.uri = URI.create(uri);
+        this.requestBody = new ByteArrayInputStream(new byte[0]);
+    }
+
+    /**
+     * Set the request body, the Content-Length is only set if it's known.
+     *
+     * @param contentType The content-type.
+     * @param body        The body.
+     * @param chunked     If the body has no Content-Length.
+     * @return This exchange.
+     */
+    public TestExchange body(String contentType, String body, boolean chunked) {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        requestHeaders.set("Content-Type", contentType);
+
+        if (!chunked) {
+            requestHeaders.set("Content-Length", String.valueOf(bytes.length));
+        }
+
+        this.requestBody = new ByteArrayInputStream(bytes);
+        return this;
+    }
+
+    public TestExchange header(String key, String value) {
+        requestHeaders.add(key, value);
+        return this;
+    }
+
+    /**
+     * @return The status and the body of the response, null if no response has been sent.
+     */
+    public String getResponse() {
+        return responseCode == -1 ? null : responseCode + ":" + new String(getResponseBytes(), StandardCharsets.UTF_8);
+    }
+
+    public byte[] getResponseBytes() {
+        return ((ByteArrayOutputStream) responseBody).toByteArray();
+    }
+
+    /**
+     * @return The length which has been passed to sendResponseHeaders, 0 for a chunked body.
+     */
+    public long getResponseLength() {
+        return responseLength;
+    }
+
+    @Override
+    public Headers getRequestHeaders() {
+        return requestHeaders;
+    }
+
+    @Override
+    public Headers getResponseHeaders() {
+        return responseHeaders;
+    }
+
+    @Override
+    public URI getRequestURI() {
+        return uri;
+    }
+
+    @Override
+    public String getRequestMethod() {
+        return method;
+    }
+
+    @Override
+    public HttpContext getHttpContext() {
+        return null;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public InputStream getRequestBody() {
+        return requestBody;
+    }
+
+    @Override
+    public OutputStream getResponseBody() {
+        return responseBody;
+    }
+
+    @Override
+    public void sendResponseHeaders(int rCode, long responseLength) {
+        if (responseCode != -1) {
+            throw new IllegalStateException("Headers already sent");
+        }
+
+        this.responseCode = rCode;
+        this.responseLength = responseLength;
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddress() {
+        return new InetSocketAddress("127.0.0.1", 50000);
+    }
+
+    @Override
+    public int getResponseCode() {
+        return responseCode;
+    }
+
+    @Override
+    public InetSocketAddress getLocalAddress() {
+        return new InetSocketAddress("127.0.0.1", 8080);
+    }
+
+    @Override
+    public String getProtocol() {
+        return "HTTP/1.1";
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        attributes.put(name, value);
+    }
+
+    @Override
+    public void setStreams(InputStream i, OutputStream o) {
+        if (i != null) {
+            this.requestBody = i;
+        }
+
+        if (o != null) {
+            this.responseBody = o;
+        }
+    }
+
+    @Override
+    public HttpPrincipal getPrincipal() {
+        return null;
+    }
+}
@@ -0,0 +1,73 @@
+package express.http.request;
+
+import express.http.Cookie;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class CookieIndexTest {
+
+    private final CookieIndex index = new CookieIndex();
+
+    private String value(String name) {
+        Cookie cookie = index.get(name);
+        return cookie == null ? null : cookie.getValue();
+    }
+
+    @Test
+    public void parse() {
+        index.parse(Collections.singletonList(" a=1; b = \"two\" ;c=; d=4=5"));
+
+        assertEquals("1", value("a"));
+        assertEquals("two", value("b"));
+        assertEquals("", value("c"));
+        assertEquals("4=5", value("d"));
+        assertNull(value("e"));
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    public void invalidPairsAndAttributes() {
+        index.parse(Collections.singletonList("$Version=1; noeq; =x; a=1"));
+
+        assertNull(value("$Version"));
+        assertNull(value("noeq"));
+        assertNull(value(""));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void lastWinsOverAllHeaders() {
+        index.parse(Arrays.asList("a=first; b=2", "a=last; e=\"\""));
+
+        assertEquals("last", value("a"));
+        assertEquals("2", value("b"));
+        assertEquals("", value("e"));
+
+        HashMap<String, Cookie> cookies = new HashMap<>();
+        index.putAll(cookies);
+        assertEquals(3, cookies.size());
+        assertEquals("last", cookies.get("a").getValue());
+    }
+
+    @Test
+    public void growsAndClears() {
+        StringBuilder header = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            header.append("_ga").append(i).append("=GA1.2.").append(i).append("; ");
+        }
+
+        index.parse(Collections.singletonList(header.toString()));
+        assertEquals(40, index.size());
+        assertEquals("GA1.2.39", value("_ga39"));
+
+        index.parse(null);
+        assertEquals(0, index.size());
+        assertNull(value("_ga39"));
+    }
+}
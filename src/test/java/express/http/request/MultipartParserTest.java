@@ -0,0 +1,133 @@
+package express.http.request;
+
+import express.ExpressException;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class MultipartParserTest {
+
+    private final List<Part> parts = new ArrayList<>();
+
+    @After
+    public void deleteParts() {
+        parts.forEach(Part::delete);
+    }
+
+    private List<Part> parse(String body, long threshold) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        List<Part> parsed = new MultipartParser(new ByteArrayInputStream(bytes), "XyZ", threshold).parse();
+        parts.addAll(parsed);
+        return parsed;
+    }
+
+    private static String part(String name, String content) {
+        return "--XyZ\r\nContent-Disposition: form-data; name=\"" + name + "\"\r\n\r\n" + content + "\r\n";
+    }
+
+    private static char[] content(int size) {
+        char[] content = new char[size];
+        Arrays.fill(content, 'x');
+        return content;
+    }
+
+    @Test
+    public void boundary() {
+        assertEquals("XyZ", MultipartParser.boundary("multipart/form-data; boundary=XyZ"));
+        assertEquals("a b", MultipartParser.boundary("Multipart/Form-Data; charset=utf-8; boundary=\"a b\""));
+        assertNull(MultipartParser.boundary("multipart/form-data"));
+        assertNull(MultipartParser.boundary("application/x-www-form-urlencoded; boundary=XyZ"));
+    }
+
+    @Test
+    public void fieldsAndFiles() throws IOException {
+        List<Part> parts = parse("preamble\r\n"
+                + part("a", "hello\r\nworld")
+                + "--XyZ\r\nContent-Disposition: form-data; name=\"file\"; filename=\"b \\\"q\\\".bin\"\r\n"
+                + "Content-Type: application/octet-stream\r\n\r\n\u00e4\r\n"
+                + "--XyZ--\r\nepilogue", 1024);
+
+        assertEquals(2, parts.size());
+        assertEquals("a", parts.get(0).getName());
+        assertEquals("hello\r\nworld", parts.get(0).getString());
+        assertFalse(parts.get(0).isFile());
+
+        assertEquals("file", parts.get(1).getName());
+        assertEquals("b \"q\".bin", parts.get(1).getFilename());
+        assertEquals("application/octet-stream", parts.get(1).getContentType());
+        assertEquals("\u00e4", parts.get(1).getString());
+        assertEquals(2, parts.get(1).getSize());
+    }
+
+    @Test
+    public void partialDelimiterInContent() throws IOException {
+        List<Part> parts = parse(part("a", "x\r\n--Xy\r\n-XyZ") + part("b", "") + "--XyZ--", 1024);
+
+        assertEquals(2, parts.size());
+        assertEquals("x\r\n--Xy\r\n-XyZ", parts.get(0).getString());
+        assertEquals("", parts.get(1).getString());
+    }
+
+    @Test
+    public void largePartsAreWrittenToFiles() throws IOException {
+        String large = new String(content(100000));
+        List<Part> parts = parse(part("small", "x") + part("large", large) + "--XyZ--", 1024);
+
+        assertTrue(parts.get(0).isInMemory());
+        assertFalse(parts.get(1).isInMemory());
+        assertEquals(100000, parts.get(1).getSize());
+
+        Path file = parts.get(1).getPath();
+        assertEquals(large, new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+
+        parts.get(1).delete();
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    public void memoryBudgetOfAllParts() throws IOException {
+        StringBuilder body = new StringBuilder();
+        String content = new String(content(20000));
+
+        for (int i = 0; i < 100; i++) {
+            body.append(part("p" + i, content));
+        }
+
+        List<Part> parts = parse(body.append("--XyZ--").toString(), 64 * 1024);
+        long inMemory = 0;
+
+        for (Part part : parts) {
+            if (part.isInMemory()) {
+                inMemory += part.getSize();
+            }
+        }
+
+        assertEquals(100, parts.size());
+        assertTrue(inMemory > 0);
+        assertTrue(inMemory <= 1024 * 1024);
+    }
+
+    @Test
+    public void invalidBodies() {
+        String large = new String(content(10000));
+
+        assertThrows(ExpressException.class, () -> parse(part("a", "x"), 1024));
+        assertThrows(ExpressException.class, () -> parse(part("a", large), 1024));
+        assertThrows(ExpressException.class, () -> parse("--XyZ\r\nContent-Disposition: form-data; name=\"a\"", 1024));
+        assertThrows(ExpressException.class, () -> parse("--XyZx\r\n\r\n--XyZ--", 1024));
+    }
+}
@@ -0,0 +1,70 @@
+package express.http.request;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class QueryIndexTest {
+
+    private final QueryIndex index = new QueryIndex();
+
+    @Test
+    public void parse() {
+        index.parse("a=1&b=two&flag&empty=");
+
+        assertEquals("1", index.get("a"));
+        assertEquals("two", index.get("b"));
+        assertEquals("", index.get("flag"));
+        assertEquals("", index.get("empty"));
+        assertNull(index.get("none"));
+    }
+
+    @Test
+    public void decodesKeysAndValues() {
+        index.parse("k+y=%41%20x&%6Bey=1&bad=%3D&broken=%zz");
+
+        assertEquals("A x", index.get("k y"));
+        assertEquals("1", index.get("key"));
+        assertEquals("=", index.get("bad"));
+        assertEquals("%zz", index.get("broken"));
+    }
+
+    @Test
+    public void repeatedKeys() {
+        index.parse("id=1&id=2&&id=3");
+
+        assertEquals("3", index.get("id"));
+        assertEquals(Arrays.asList("1", "2", "3"), index.getAll("id"));
+        assertEquals(Collections.emptyList(), index.getAll("none"));
+
+        HashMap<String, String> queries = new HashMap<>();
+        index.putAll(queries);
+        assertEquals(1, queries.size());
+        assertEquals("3", queries.get("id"));
+    }
+
+    @Test
+    public void growsAndClears() {
+        StringBuilder query = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            query.append("k").append(i).append('=').append(i).append('&');
+        }
+
+        index.parse(query.toString());
+        assertEquals("39", index.get("k39"));
+
+        index.parse(null);
+        assertNull(index.get("k39"));
+    }
+
+    @Test
+    public void lenientUtf8() {
+        assertEquals("\u00e4\ufffd", RequestUtils.decode("%C3%A4%C3", 0, 9));
+        assertEquals("a%4", RequestUtils.decode("a%4", 0, 3));
+    }
+}
@@ -0,0 +1,132 @@
+package express.http.request;
+
+import express.Express;
+import express.ExpressException;
+import express.http.TestExchange;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+
+public class RequestTest {
+
+    private final Express app = new Express();
+
+    private static String content(int size) {
+        char[] content = new char[size];
+        Arrays.fill(content, 'x');
+        return new String(content);
+    }
+
+    @Test
+    public void formQueries() {
+        Request req = new Request(new TestExchange("POST", "/").body("application/x-www-form-urlencoded", "a=1&b=%C3%A4", true), app);
+
+        assertEquals("1", req.getFormQuery("a"));
+        assertEquals("\u00e4", req.getFormQuery("b"));
+        assertEquals(2, req.getFormQuerys().size());
+    }
+
+    @Test
+    public void oversizedFormIsNotParsedAgain() {
+        app.setMaxFormSize(4096);
+        String body = "a=" + content(8000) + "&role=admin";
+        Request req = new Request(new TestExchange("POST", "/").body("application/x-www-form-urlencoded", body, true), app);
+
+        ExpressException first = assertThrows(ExpressException.class, req::getFormQuerys);
+        assertSame(first, assertThrows(ExpressException.class, req::getFormQuerys));
+        assertSame(first, assertThrows(ExpressException.class, () -> req.getFormQuery("role")));
+    }
+
+    @Test
+    public void invalidMultipartIsNotParsedAgain() {
+        String body = "--XyZ\r\nContent-Disposition: form-data; name=\"a\"\r\n\r\n" + content(100) + "\r\n--XyZ";
+        Request req = new Request(new TestExchange("POST", "/").body("multipart/form-data; boundary=XyZ", body, false), app);
+
+        ExpressException first = assertThrows(ExpressException.class, req::getParts);
+        assertSame(first, assertThrows(ExpressException.class, req::getParts));
+        assertSame(first, assertThrows(ExpressException.class, () -> req.getPart("a")));
+    }
+
+    @Test
+    public void transferToReplacesTarget() throws IOException {
+        Path dir = Files.createTempDirectory("express");
+        Path target = Files.write(dir.resolve("body.bin"), "old".getBytes(StandardCharsets.UTF_8));
+        Request req = new Request(new TestExchange("POST", "/").body("application/octet-stream", "new body", false), app);
+
+        try {
+            assertEquals(8, req.transferTo(target).getBytes());
+            assertEquals("new body", new String(Files.readAllBytes(target), StandardCharsets.UTF_8));
+            assertEquals(1, list(dir).length);
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void failedTransferKeepsTarget() throws IOException {
+        Path dir = Files.createTempDirectory("express");
+        Path target = Files.write(dir.resolve("body.bin"), "old".getBytes(StandardCharsets.UTF_8));
+        Request req = new Request(new TestExchange("POST", "/").body("application/octet-stream", content(100), true), app);
+        req.limitBody(10);
+
+        try {
+            assertThrows(IOException.class, () -> req.transferTo(target));
+            assertEquals("old", new String(Files.readAllBytes(target), StandardCharsets.UTF_8));
+            assertEquals(1, list(dir).length);
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void recycledRequestCannotBeUsed() {
+        Request req = Request.pooled(new TestExchange("GET", "/?a=1"), app);
+        req.recycle();
+
+        assertThrows(IllegalStateException.class, () -> req.getQuery("a"));
+        assertThrows(IllegalStateException.class, req::getURI);
+        req.cleanup();
+        req.recycle();
+    }
+
+    @Test
+    public void pooledRequestDoesNotSeePreviousValues() {
+        AttributeKey<String> key = AttributeKey.create("pooled", String.class);
+        Request first = Request.pooled(new TestExchange("GET", "/?a=1").header("Cookie", "c=1"), app);
+        first.setAttribute(key, "first");
+        assertEquals("1", first.getQuery("a"));
+        assertEquals("1", first.getCookie("c").getValue());
+        first.recycle();
+
+        Request second = Request.pooled(new TestExchange("GET", "/?b=2").header("Cookie", "d=2"), app);
+        assertNull(second.getAttribute(key));
+        assertNull(second.getQuery("a"));
+        assertNull(second.getCookie("c"));
+        assertEquals("2", second.getQuery("b"));
+        assertEquals("2", second.getCookie("d").getValue());
+    }
+
+    private static Object[] list(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.toArray();
+        }
+    }
+
+    private static void delete(Path dir) throws IOException {
+        for (Object file : list(dir)) {
+            Files.delete((Path) file);
+        }
+
+        Files.delete(dir);
+    }
+}
@@ -0,0 +1,77 @@
+package express.http.response;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ByteRangeTest {
+
+    private static String ranges(String header, long size) {
+        List<ByteRange> ranges = ByteRange.parse(header, size);
+
+        if (ranges == null) {
+            return null;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (ByteRange range : ranges) {
+            sb.append(sb.length() == 0 ? "" : ",").append(range.start).append('-').append(range.end);
+        }
+
+        return sb.toString();
+    }
+
+    @Test
+    public void singleRanges() {
+        assertEquals("0-99", ranges("bytes=0-99", 1000));
+        assertEquals("900-999", ranges("bytes=900-", 1000));
+        assertEquals("950-999", ranges("bytes=-50", 1000));
+        assertEquals("0-999", ranges("bytes=-5000", 1000));
+        assertEquals("990-999", ranges("Bytes=990-2000", 1000));
+    }
+
+    @Test
+    public void lengthAndContentRange() {
+        ByteRange range = ByteRange.parse("bytes=10-19", 100).get(0);
+
+        assertEquals(10, range.length());
+        assertEquals("bytes 10-19/100", range.contentRange(100));
+    }
+
+    @Test
+    public void unsatisfiable() {
+        assertEquals("", ranges("bytes=1000-", 1000));
+        assertEquals("", ranges("bytes=-0", 1000));
+        assertEquals("", ranges("bytes=0-", 0));
+    }
+
+    @Test
+    public void invalid() {
+        assertNull(ranges("items=0-1", 1000));
+        assertNull(ranges("bytes=5-1", 1000));
+        assertNull(ranges("bytes=", 1000));
+        assertNull(ranges("bytes=a-b", 1000));
+        assertNull(ranges("bytes=1", 1000));
+    }
+
+    @Test
+    public void mergesAndSorts() {
+        assertEquals("0-30", ranges("bytes=0-10,5-20,21-30", 1000));
+        assertEquals("0-9,100-109", ranges("bytes=100-109, ,0-9", 1000));
+    }
+
+    @Test
+    public void tooManyRanges() {
+        StringBuilder header = new StringBuilder("bytes=");
+        for (int i = 0; i < 17; i++) {
+            header.append(i * 10).append('-').append(i * 10 + 1).append(',');
+        }
+
+        assertNull(ranges(header.toString(), 1000));
+        assertTrue(ranges(header.substring(0, header.lastIndexOf("160-")), 1000).startsWith("0-1,10-11"));
+    }
+}
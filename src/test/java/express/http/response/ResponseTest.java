@@ -0,0 +1,125 @@
+package express.http.response;
+
+import express.http.TestExchange;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class ResponseTest {
+
+    private final TestExchange exchange = new TestExchange("GET", "/");
+    private final Response res = new Response(exchange);
+
+    private String contentType() {
+        return exchange.getResponseHeaders().getFirst("Content-Type");
+    }
+
+    @Test
+    public void charsetIsAddedToTextualTypes() {
+        res.send("\u00e4");
+
+        assertEquals("text/plain; charset=utf-8", contentType());
+        assertArrayEquals("\u00e4".getBytes(StandardCharsets.UTF_8), exchange.getResponseBytes());
+        assertEquals(2, exchange.getResponseLength());
+    }
+
+    @Test
+    public void charsetIsNotAddedToBinaryTypes() {
+        res.setContentType("image/png");
+        res.send("x");
+
+        assertEquals("image/png", contentType());
+    }
+
+    @Test
+    public void charsetOfResponse() {
+        res.setContentType("application/problem+json");
+        res.setCharset(StandardCharsets.ISO_8859_1);
+        res.send("\u00e4");
+
+        assertEquals("application/problem+json; charset=iso-8859-1", contentType());
+        assertArrayEquals(new byte[]{(byte) 0xe4}, exchange.getResponseBytes());
+    }
+
+    @Test
+    public void declaredCharsetIsUsedForEncoding() {
+        res.setContentType("text/html; Charset=\"ISO-8859-1\"");
+        res.send("\u00e4");
+
+        assertEquals("text/html; Charset=\"ISO-8859-1\"", contentType());
+        assertArrayEquals(new byte[]{(byte) 0xe4}, exchange.getResponseBytes());
+    }
+
+    @Test
+    public void unknownCharsetIsReplaced() {
+        res.setContentType("text/html; charset=no-such-charset; level=1");
+        res.send("\u00e4");
+
+        assertEquals("text/html; charset=utf-8; level=1", contentType());
+        assertArrayEquals("\u00e4".getBytes(StandardCharsets.UTF_8), exchange.getResponseBytes());
+    }
+
+    @Test
+    public void recycledResponseCannotBeUsed() {
+        res.send();
+        res.recycle();
+
+        assertThrows(IllegalStateException.class, res::isClosed);
+        assertThrows(IllegalStateException.class, () -> res.send("x"));
+        assertThrows(IllegalStateException.class, () -> res.setHeader("a", "b"));
+    }
+
+    @Test
+    public void openStreamSendsChunks() throws IOException {
+        res.setContentType("application/octet-stream");
+        OutputStream out = res.openStream();
+
+        assertEquals(0, exchange.getResponseLength());
+        assertEquals("application/octet-stream", contentType());
+        assertTrue(res.isStreaming());
+        assertTrue(res.isClosed());
+
+        out.write(new byte[]{1, 2});
+        out.write(3);
+        out.close();
+        out.close();
+
+        assertArrayEquals(new byte[]{1, 2, 3}, exchange.getResponseBytes());
+        assertFalse(res.isStreaming());
+        assertTrue(res.isClosed());
+        assertThrows(IOException.class, () -> out.write(4));
+    }
+
+    @Test
+    public void openWriterUsesCharset() throws IOException {
+        res.setContentType("text/plain; charset=iso-8859-1");
+
+        try (Writer writer = res.openWriter()) {
+            writer.write("\u00e4");
+        }
+
+        assertEquals("text/plain; charset=iso-8859-1", contentType());
+        assertArrayEquals(new byte[]{(byte) 0xe4}, exchange.getResponseBytes());
+    }
+
+    @Test
+    public void streamCannotBeOpenedTwice() {
+        res.openStream();
+
+        assertThrows(IllegalStateException.class, res::openStream);
+        assertThrows(IllegalStateException.class, res::openWriter);
+
+        // Sending is ignored once the headers have been sent
+        res.send("x");
+        assertEquals(0, exchange.getResponseBytes().length);
+    }
+}
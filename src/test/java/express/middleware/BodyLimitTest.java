@@ -0,0 +1,84 @@
+package express.middleware;
+
+import express.Express;
+import express.filter.FilterImpl;
+import express.filter.FilterLayerHandler;
+import express.http.TestExchange;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+public class BodyLimitTest {
+
+    private final Express app = new Express();
+    private final FilterLayerHandler handler = new FilterLayerHandler(2);
+
+    @Before
+    public void setup() {
+        handler.add(0, new FilterImpl("POST", "/small", Middleware.bodyLimit(4)));
+        handler.add(1, new FilterImpl("POST", "*", (req, res) -> {
+            try {
+                res.send("read " + read(req.getBody()));
+            } catch (IOException e) {
+                res.send("failed");
+            }
+        }));
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8];
+        int n;
+
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private TestExchange send(String path, String body, boolean chunked) {
+        TestExchange exchange = new TestExchange("POST", path).body("text/plain", body, chunked);
+        handler.handle(exchange, app);
+        return exchange;
+    }
+
+    @Test
+    public void appLimit() {
+        app.setMaxBodySize(10);
+
+        TestExchange rejected = send("/", "0123456789x", false);
+        assertEquals("413:", rejected.getResponse());
+        assertEquals("close", rejected.getResponseHeaders().getFirst("Connection"));
+
+        assertEquals("200:read 0123456789", send("/", "0123456789", false).getResponse());
+    }
+
+    @Test
+    public void routeLimit() {
+        assertEquals("413:", send("/small", "hello", false).getResponse());
+        assertEquals("200:read hell", send("/small", "hell", false).getResponse());
+        assertEquals("200:read hello", send("/other", "hello", false).getResponse());
+    }
+
+    @Test
+    public void bodyWithoutContentLength() {
+        app.setMaxBodySize(10);
+
+        assertEquals("200:failed", send("/", "0123456789x", true).getResponse());
+        assertEquals("200:read 0123456789", send("/", "0123456789", true).getResponse());
+        assertEquals("200:failed", send("/small", "hello", true).getResponse());
+    }
+
+    @Test
+    public void negativeLimit() {
+        assertThrows(IllegalArgumentException.class, () -> Middleware.bodyLimit(-1));
+    }
+}